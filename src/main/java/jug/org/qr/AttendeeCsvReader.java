@@ -0,0 +1,88 @@
+package jug.org.qr;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads attendees from a roster CSV one row at a time, as the render loop asks for them, so the
+ * first pages are laid out while the rest of the file is still being read (or still uploading,
+ * see {@link UploadSession#openStream()}). Rows are parsed with {@link BadgeService#parseCsvRow}.
+ *
+ * The caller owns and closes the stream. Read errors surface as {@link UncheckedIOException}.
+ */
+final class AttendeeCsvReader implements Iterator<Attendee> {
+
+    private final BufferedReader reader;
+    private final GenerationProgress progress;
+    private Attendee next;
+    private boolean headerSkipped;
+    private boolean finished;
+    private int lineNumber;
+    private int validRows;
+    private int skippedRows;
+
+    AttendeeCsvReader(InputStream csv, GenerationProgress progress) {
+        this.reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        this.progress = progress;
+        progress.parsingStarted();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Attendee next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Attendee attendee = next;
+        next = null;
+        return attendee;
+    }
+
+    int getValidRows() {
+        return validRows;
+    }
+
+    private void advance() {
+        RenderEvents.ParseRow event = new RenderEvents.ParseRow();
+        event.begin();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!headerSkipped) {
+                    headerSkipped = true;
+                    continue;
+                }
+                Attendee attendee = BadgeService.parseCsvRow(line);
+                if (attendee == null) {
+                    skippedRows++;
+                    continue;
+                }
+                validRows++;
+                progress.rowParsed();
+                event.line = lineNumber;
+                event.commitFor(validRows - 1);
+                next = attendee;
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+        finished = true;
+        progress.parsingFinished();
+        System.out.println("Processed CSV: " + validRows + " valid rows, " + skippedRows + " rows skipped");
+    }
+}
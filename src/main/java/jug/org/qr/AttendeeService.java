@@ -1,46 +1,69 @@
 package jug.org.qr;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
 public class AttendeeService {
 
 
+    /**
+     * Reads a roster from disk for the command-line tools. The file is memory-mapped and scanned
+     * for line breaks in place; only one line at a time is decoded, so the heap never holds a copy
+     * of the whole file. Rows are parsed exactly like web uploads ({@link BadgeService#parseCsvRow}).
+     */
     public static List<Attendee> readAttendeesFromCSV(String csvPath) throws Exception {
         List<Attendee> attendees = new ArrayList<>();
+        int skippedRows = 0;
 
-        // Open the CSV file using UTF-8 encoding
-        try (BufferedReader br = new BufferedReader(new FileReader(csvPath, StandardCharsets.UTF_8))) {
-            String line;
+        try (FileChannel channel = FileChannel.open(Path.of(csvPath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CSV file too large to map (over 2GB): " + csvPath);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // \r and \n never occur inside a multi-byte UTF-8 sequence, so lines can be cut on bytes.
+            int length = (int) size;
+            byte[] line = new byte[256];
+            int lineStart = 0;
             boolean firstLine = true;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && mapped.get(lineEnd) != '\n' && mapped.get(lineEnd) != '\r') {
+                    lineEnd++;
+                }
+                int lineLength = lineEnd - lineStart;
+                if (lineLength > line.length) {
+                    line = new byte[Math.max(lineLength, line.length * 2)];
+                }
+                mapped.get(lineStart, line, 0, lineLength);
+
+                // Next line starts after \n, \r or \r\n
+                lineStart = lineEnd + 1;
+                if (lineEnd < length && mapped.get(lineEnd) == '\r' && lineStart < length && mapped.get(lineStart) == '\n') {
+                    lineStart++;
+                }
 
-            while ((line = br.readLine()) != null) {
                 if (firstLine) {
                     firstLine = false; // Skip header
                     continue;
                 }
-
-                // Split by comma, ensuring empty fields are kept
-                String[] columns = line.split(",", -1);
-
-                if (columns.length >= 3) {
-                    String fullName = columns[0].trim();   // Ad Soyad
-                    String linkedin = columns[1].trim();      // LinkedIn handle/URL
-                    String company = columns[2].trim();    // Şirket
-
-                    // Split full name into name and surname (best effort)
-                    String[] nameParts = fullName.split(" ", 2);
-                    String name = nameParts.length > 0 ? nameParts[0] : "";
-                    String surname = nameParts.length > 1 ? nameParts[1] : "";
-                    System.out.println("Name: " + fullName + ", LinkedIn: " + linkedin + ", Company: " + company);
-                    attendees.add(new Attendee(name, surname, linkedin, company));
+                Attendee attendee = BadgeService.parseCsvRow(new String(line, 0, lineLength, StandardCharsets.UTF_8));
+                if (attendee == null) {
+                    skippedRows++;
+                    continue;
                 }
+                attendees.add(attendee);
             }
         }
 
+        System.out.println("Read " + csvPath + ": " + attendees.size() + " valid rows, " + skippedRows + " rows skipped");
         return attendees;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,342 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads attendees from the first sheet of an Excel workbook (.xlsx), one row at a time as the
+ * render loop asks for them, like {@link AttendeeCsvReader}. Columns A, B and C are the name,
+ * LinkedIn/email and company; the first row is the header.
+ *
+ * The sheet XML is streamed with a StAX pull parser, never loaded as a whole, so memory does not
+ * grow with the row count. Only the shared-strings table is held, packed as UTF-8 in one array,
+ * because cells refer to it by index.
+ *
+ * Workbooks that cannot be read, truncated ones included, surface as {@link IllegalArgumentException}.
+ */
+final class AttendeeXlsxReader implements Iterator<Attendee>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendeeXlsxReader.class);
+
+    private static final String WORKBOOK = "xl/workbook.xml";
+    private static final String WORKBOOK_RELS = "xl/_rels/workbook.xml.rels";
+    private static final String SHARED_STRINGS = "xl/sharedStrings.xml";
+    private static final String DEFAULT_SHEET = "xl/worksheets/sheet1.xml";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    // The zip entries are compressed; a crafted workbook could unpack to far more than was uploaded.
+    private static final int MAX_SHARED_STRING_BYTES = 64 << 20;
+    private static final int COLUMNS = 3;
+
+    private static final XMLInputFactory XML = newXmlInputFactory();
+
+    private final ZipFile zip;
+    private final GenerationProgress progress;
+    private final SharedStrings sharedStrings;
+    private final InputStream sheetStream;
+    private final XMLStreamReader sheet;
+
+    private final String[] cells = new String[COLUMNS];
+    private Attendee next;
+    private boolean headerSkipped;
+    private boolean finished;
+    private int rowNumber;
+    private int validRows;
+    private int skippedRows;
+
+    AttendeeXlsxReader(Path workbook, GenerationProgress progress) throws IOException {
+        try {
+            this.zip = new ZipFile(workbook.toFile(), StandardCharsets.UTF_8);
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Not a readable Excel workbook: " + e.getMessage(), e);
+        }
+        this.progress = progress;
+        try {
+            String sheetName = firstSheet();
+            ZipEntry sheetEntry = zip.getEntry(sheetName);
+            if (sheetEntry == null) {
+                throw new IllegalArgumentException("Not an Excel workbook: " + sheetName + " is missing");
+            }
+            this.sharedStrings = readSharedStrings();
+            this.sheetStream = zip.getInputStream(sheetEntry);
+            this.sheet = XML.createXMLStreamReader(sheetStream);
+        } catch (XMLStreamException e) {
+            zip.close();
+            throw new IllegalArgumentException("Not a readable Excel workbook: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+        progress.parsingStarted();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Attendee next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Attendee attendee = next;
+        next = null;
+        return attendee;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sheet.close();
+        } catch (XMLStreamException e) {
+            // Closing the parser only releases its buffers; the zip below holds the file.
+        }
+        sheetStream.close();
+        zip.close();
+    }
+
+    private void advance() {
+        RenderEvents.ParseRow event = new RenderEvents.ParseRow();
+        event.begin();
+        try {
+            int column = -1;
+            int nextColumn = 0;
+            String type = null;
+            String value = null;
+            while (sheet.hasNext()) {
+                int token = sheet.next();
+                if (token == XMLStreamConstants.START_ELEMENT) {
+                    switch (sheet.getLocalName()) {
+                        case "row" -> {
+                            Arrays.fill(cells, null);
+                            nextColumn = 0;
+                            String r = sheet.getAttributeValue(null, "r");
+                            rowNumber = r != null ? Integer.parseInt(r) : rowNumber + 1;
+                        }
+                        case "c" -> {
+                            // The cell reference is optional; without it, cells follow one another.
+                            String ref = sheet.getAttributeValue(null, "r");
+                            column = ref != null ? columnIndex(ref) : nextColumn;
+                            nextColumn = column + 1;
+                            type = sheet.getAttributeValue(null, "t");
+                            value = null;
+                        }
+                        case "v" -> {
+                            String text = sheet.getElementText();
+                            if (column < COLUMNS) {
+                                value = cellValue(type, text);
+                            }
+                        }
+                        case "is" -> {
+                            String text = readText(sheet, "is");
+                            if (column < COLUMNS) {
+                                value = text;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (token == XMLStreamConstants.END_ELEMENT) {
+                    String name = sheet.getLocalName();
+                    if (name.equals("c")) {
+                        if (column >= 0 && column < COLUMNS) {
+                            cells[column] = value;
+                        }
+                        column = -1;
+                    } else if (name.equals("row")) {
+                        if (!headerSkipped) {
+                            headerSkipped = true;
+                            continue;
+                        }
+                        Attendee attendee = BadgeService.toAttendee(cells[0], cells[1], cells[2]);
+                        if (attendee == null) {
+                            skippedRows++;
+                            continue;
+                        }
+                        validRows++;
+                        progress.rowParsed();
+                        event.line = rowNumber;
+                        event.commitFor(validRows - 1);
+                        next = attendee;
+                        return;
+                    } else if (name.equals("sheetData")) {
+                        break;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Could not read the Excel sheet near row " + rowNumber + ": " + e.getMessage(), e);
+        }
+        finished = true;
+        progress.parsingFinished();
+        log.info("Processed XLSX: {} valid rows, {} rows skipped", validRows, skippedRows);
+    }
+
+    private String cellValue(String type, String text) {
+        if (type == null) {
+            return text;
+        }
+        return switch (type) {
+            case "s" -> sharedStrings.get(Integer.parseInt(text.trim()));
+            case "b" -> text.equals("1") ? "TRUE" : "FALSE";
+            // "str" (formula result), "n", "e" and "d" carry their text as is
+            default -> text;
+        };
+    }
+
+    /** The sheet the workbook lists first, which is not necessarily sheet1.xml. */
+    private String firstSheet() throws IOException, XMLStreamException {
+        String relationshipId = null;
+        ZipEntry workbook = zip.getEntry(WORKBOOK);
+        if (workbook == null) {
+            throw new IllegalArgumentException("Not an Excel workbook: " + WORKBOOK + " is missing");
+        }
+        try (InputStream in = zip.getInputStream(workbook)) {
+            XMLStreamReader xml = XML.createXMLStreamReader(in);
+            while (xml.hasNext() && relationshipId == null) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("sheet")) {
+                    relationshipId = xml.getAttributeValue(RELATIONSHIPS_NS, "id");
+                }
+            }
+            xml.close();
+        }
+        ZipEntry rels = zip.getEntry(WORKBOOK_RELS);
+        if (relationshipId == null || rels == null) {
+            return DEFAULT_SHEET;
+        }
+        try (InputStream in = zip.getInputStream(rels)) {
+            XMLStreamReader xml = XML.createXMLStreamReader(in);
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Relationship")
+                        && relationshipId.equals(xml.getAttributeValue(null, "Id"))) {
+                    String target = xml.getAttributeValue(null, "Target");
+                    xml.close();
+                    // Targets are relative to xl/ unless absolute within the package.
+                    return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                }
+            }
+            xml.close();
+        }
+        return DEFAULT_SHEET;
+    }
+
+    private SharedStrings readSharedStrings() throws IOException, XMLStreamException {
+        SharedStrings strings = new SharedStrings();
+        ZipEntry entry = zip.getEntry(SHARED_STRINGS);
+        if (entry == null) {
+            // Workbooks with inline strings only have no table.
+            return strings;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader xml = XML.createXMLStreamReader(in);
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("si")) {
+                    strings.add(readText(xml, "si"));
+                }
+            }
+            xml.close();
+        }
+        return strings;
+    }
+
+    /**
+     * Concatenates the {@code <t>} runs up to the end of {@code element}, leaving out phonetic
+     * hints ({@code <rPh>}), which repeat the text in another script.
+     */
+    private static String readText(XMLStreamReader xml, String element) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int phonetic = 0;
+        while (xml.hasNext()) {
+            int token = xml.next();
+            if (token == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (name.equals("rPh")) {
+                    phonetic++;
+                } else if (name.equals("t") && phonetic == 0) {
+                    text.append(xml.getElementText());
+                }
+            } else if (token == XMLStreamConstants.END_ELEMENT) {
+                String name = xml.getLocalName();
+                if (name.equals("rPh")) {
+                    phonetic--;
+                } else if (name.equals(element)) {
+                    break;
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /** "C12" is column 2; "AA7" is column 26. */
+    private static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Uploaded XML: no DTDs, no external entities.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /** The shared-strings table, UTF-8 in one growing array. */
+    private static final class SharedStrings {
+        private byte[] text = new byte[16 * 1024];
+        private int length;
+        private int[] offsets = new int[1024];
+        private int count;
+
+        void add(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            if (length + utf8.length > MAX_SHARED_STRING_BYTES) {
+                throw new IllegalArgumentException("Excel workbook has more than " + (MAX_SHARED_STRING_BYTES >> 20)
+                        + " MB of text; export the roster as CSV instead");
+            }
+            if (length + utf8.length > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, length + utf8.length));
+            }
+            System.arraycopy(utf8, 0, text, length, utf8.length);
+            length += utf8.length;
+            if (count + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++count] = length;
+        }
+
+        String get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IllegalArgumentException("Excel cell refers to missing shared string " + index);
+            }
+            return new String(text, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        }
+    }
+}
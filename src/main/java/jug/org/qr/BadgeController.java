@@ -1,37 +1,101 @@
 package jug.org.qr;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Controller
 public class BadgeController {
 
+    private static final Logger log = LoggerFactory.getLogger(BadgeController.class);
+
     @Autowired
     private BadgeService badgeService;
 
-    private final ConcurrentHashMap<String, byte[]> pdfCache = new ConcurrentHashMap<>();
+    @Autowired
+    private ResultStore resultStore;
+
+    @Autowired
+    private ProgressRegistry progressRegistry;
+
+    @Autowired
+    private UploadSessions uploadSessions;
+
+    @Autowired
+    private ShardService shardService;
+
+    @Autowired
+    private RecentBatches recentBatches;
+
+    @Autowired
+    private BatchJournal batchJournal;
+
+    @Autowired
+    private RenderCancellations renderCancellations;
+
+    // Tomcat's sendfile request attributes (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Housekeeping only: the progress streams have their own threads below.
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
+    // Ticks every progress stream; it only hands the sends to progressSenders, so it never blocks on a client.
+    private final ScheduledExecutorService progressTicker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "badgeqr-progress-tick");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A send blocks while the client does not read; a stalled browser then holds up only its own stream.
+    private final ExecutorService progressSenders = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "badgeqr-progress-send");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public BadgeController() {
-        // Clean up cache entries after 5 minutes
+        // Drop results nobody downloaded within the store's TTL
         scheduler.scheduleAtFixedRate(() -> {
-            pdfCache.clear();
-        }, 5, 5, TimeUnit.MINUTES);
+            resultStore.sweepExpired();
+            progressRegistry.sweepExpired();
+            uploadSessions.sweepExpired();
+            recentBatches.sweepExpired();
+            batchJournal.sweepExpired();
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        progressTicker.shutdownNow();
+        progressSenders.shutdownNow();
     }
 
     @GetMapping("/")
@@ -44,17 +108,25 @@ public class BadgeController {
 
     @PostMapping("/generate")
     public String generateBadges(@RequestParam("file") MultipartFile file, 
+                               @RequestParam(value = "progressId", required = false) String progressId,
+                               @RequestParam(value = "layout", required = false) String layout,
                                RedirectAttributes redirectAttributes) {
+        GenerationProgress progress = progressRegistry.track(progressId);
         try {
-            byte[] pdfBytes = badgeService.generateBadges(file);
-            String fileId = UUID.randomUUID().toString();
-            pdfCache.put(fileId, pdfBytes);
+            // Any layout from badge-layouts.json can be requested; defaults to the 80x80 badge.
+            String layoutName = layout != null ? layout : LayoutPlans.BADGE_80X80;
+            RecentBatches.Result result = renderOnce(file, layoutName, progress);
+            progress.done();
             
-            redirectAttributes.addFlashAttribute("success", "Badges generated successfully!");
-            return "redirect:/download?fileId=" + fileId;
+            redirectAttributes.addFlashAttribute("success", result.reused()
+                    ? "Badges generated successfully! (same file as a recent upload, its PDF was reused)"
+                    : "Badges generated successfully!");
+            return "redirect:/download?fileId=" + result.fileId();
         } catch (Exception e) {
-            if (e.getMessage().contains("No valid attendees found")) {
-                redirectAttributes.addFlashAttribute("error", "No valid rows found in CSV. Please check your file format.");
+            progress.failed(e.getMessage());
+            renderCancellations.record("/generate", e);
+            if (e.getMessage() != null && e.getMessage().contains("No valid attendees found")) {
+                redirectAttributes.addFlashAttribute("error", "No valid rows found in the CSV or Excel file. Please check its columns.");
             } else {
                 redirectAttributes.addFlashAttribute("error", "Error: " + e.getMessage());
             }
@@ -71,18 +143,15 @@ public class BadgeController {
             RedirectAttributes redirectAttributes) {
         try {
             // Split full name into name and surname
-            System.out.println("[DEBUG Badge] Full name received: '" + fullName + "'");
             String[] nameParts = fullName.trim().split(" ", 2);
             String name = nameParts.length > 0 ? nameParts[0] : "";
             String surname = nameParts.length > 1 ? nameParts[1] : "";
-            System.out.println("[DEBUG Badge] Split result - name: '" + name + "', surname: '" + surname + "'");
-            System.out.println("[DEBUG Badge] getNameSurname() will return: '" + (name + " " + surname) + "'");
+            log.debug("quick badge fullName='{}' name='{}' surname='{}'", fullName, name, surname);
             
             String contact = (linkedin != null && !linkedin.trim().isEmpty()) ? linkedin : email;
             Attendee attendee = new Attendee(name, surname, contact, company);
             byte[] pdfBytes = badgeService.generateSingleBadge(attendee);
-            String fileId = UUID.randomUUID().toString();
-            pdfCache.put(fileId, pdfBytes);
+            String fileId = resultStore.put(pdfBytes);
             
             redirectAttributes.addFlashAttribute("success", "Badge generated successfully!");
             return "redirect:/download?fileId=" + fileId;
@@ -101,18 +170,15 @@ public class BadgeController {
             RedirectAttributes redirectAttributes) {
         try {
             // Split full name into name and surname
-            System.out.println("[DEBUG Label] Full name received: '" + fullName + "'");
             String[] nameParts = fullName.trim().split(" ", 2);
             String name = nameParts.length > 0 ? nameParts[0] : "";
             String surname = nameParts.length > 1 ? nameParts[1] : "";
-            System.out.println("[DEBUG Label] Split result - name: '" + name + "', surname: '" + surname + "'");
-            System.out.println("[DEBUG Label] getNameSurname() will return: '" + (name + " " + surname) + "'");
+            log.debug("quick label fullName='{}' name='{}' surname='{}'", fullName, name, surname);
             
             String contact = (linkedin != null && !linkedin.trim().isEmpty()) ? linkedin : email;
             Attendee attendee = new Attendee(name, surname, contact, company);
             byte[] pdfBytes = badgeService.generateSingleLabel80x50(attendee);
-            String fileId = UUID.randomUUID().toString();
-            pdfCache.put(fileId, pdfBytes);
+            String fileId = resultStore.put(pdfBytes);
 
             redirectAttributes.addFlashAttribute("success", "Label generated successfully!");
             return "redirect:/download?fileId=" + fileId + "&filename=label_80x50.pdf";
@@ -124,17 +190,114 @@ public class BadgeController {
 
     @PostMapping("/generate-labels")
     public String generateLabels(@RequestParam("file") MultipartFile file,
+                                 @RequestParam(value = "progressId", required = false) String progressId,
+                                 @RequestParam(value = "layout", required = false) String layout,
+                                 RedirectAttributes redirectAttributes) {
+        GenerationProgress progress = progressRegistry.track(progressId);
+        try {
+            String layoutName = layout != null ? layout : LayoutPlans.LABEL_80X50;
+            RecentBatches.Result result = renderOnce(file, layoutName, progress);
+            progress.done();
+
+            redirectAttributes.addFlashAttribute("success", result.reused()
+                    ? "Labels generated successfully! (same file as a recent upload, its PDF was reused)"
+                    : "Labels generated successfully!");
+            return "redirect:/download?fileId=" + result.fileId() + "&filename=labels_80x50.pdf";
+        } catch (Exception e) {
+            progress.failed(e.getMessage());
+            renderCancellations.record("/generate-labels", e);
+            if (e.getMessage() != null && e.getMessage().contains("No valid attendees found")) {
+                redirectAttributes.addFlashAttribute("error", "No valid rows found in the CSV or Excel file. Please check its columns.");
+            } else {
+                redirectAttributes.addFlashAttribute("error", "Error: " + e.getMessage());
+            }
+            return "redirect:/";
+        }
+    }
+
+    /**
+     * Badges and labels of one roster in one pass: rows parsed and QR codes encoded once, both
+     * PDFs rendered at the same time and downloaded together as a ZIP.
+     */
+    @PostMapping("/generate-both")
+    public String generateBadgesAndLabels(@RequestParam("file") MultipartFile file,
+                                          @RequestParam(value = "progressId", required = false) String progressId,
+                                          RedirectAttributes redirectAttributes) {
+        GenerationProgress progress = progressRegistry.track(progressId);
+        try {
+            String key = recentBatches.key(file, LayoutPlans.BADGE_80X80 + "+" + LayoutPlans.LABEL_80X50,
+                    badgeService.getOutputVersion(LayoutPlans.BADGE_80X80) + "+" + badgeService.getOutputVersion(LayoutPlans.LABEL_80X50));
+            RecentBatches.Result result = recentBatches.render(key, progress,
+                    () -> resultStore.write(out -> badgeService.generateBadgesAndLabels(file, progress, out)));
+            if (result.reused()) {
+                badgeService.indexRoster(file);
+            }
+            progress.done();
+
+            redirectAttributes.addFlashAttribute("success", result.reused()
+                    ? "Badges and labels generated successfully! (same file as a recent upload, its PDFs were reused)"
+                    : "Badges and labels generated successfully!");
+            return "redirect:/download?fileId=" + result.fileId() + "&filename=badges_and_labels.zip";
+        } catch (Exception e) {
+            progress.failed(e.getMessage());
+            renderCancellations.record("/generate-both", e);
+            if (e.getMessage() != null && e.getMessage().contains("No valid attendees found")) {
+                redirectAttributes.addFlashAttribute("error", "No valid rows found in the CSV or Excel file. Please check its columns.");
+            } else {
+                redirectAttributes.addFlashAttribute("error", "Error: " + e.getMessage());
+            }
+            return "redirect:/";
+        }
+    }
+
+    /**
+     * Renders the upload unless an identical one (same bytes, layout and layout version) is rendering or was just rendered.
+     * The same key names its render journal, so resubmitting after a restart resumes the interrupted render.
+     * A reused result still becomes the roster the desk searches.
+     */
+    private RecentBatches.Result renderOnce(MultipartFile file, String layoutName, GenerationProgress progress) throws Exception {
+        String key = recentBatches.key(file, layoutName, badgeService.getOutputVersion(layoutName));
+        RecentBatches.Result result = recentBatches.render(key, progress,
+                () -> resultStore.write(out -> badgeService.generateBatch(file, layoutName, progress, out, key)));
+        if (result.reused()) {
+            badgeService.indexRoster(file);
+        }
+        return result;
+    }
+
+    /**
+     * Splits the roster into one PDF per printer (see {@link RosterShards}), rendered concurrently.
+     * {@code delivery=zip} returns one archive; {@code separate} lists a download per shard.
+     */
+    @PostMapping("/generate-shards")
+    public String generateShards(@RequestParam("file") MultipartFile file,
+                                 @RequestParam(value = "shards", defaultValue = "4") int shardCount,
+                                 @RequestParam(value = "shardBy", defaultValue = "surname") String shardBy,
+                                 @RequestParam(value = "delivery", defaultValue = "zip") String delivery,
+                                 @RequestParam(value = "progressId", required = false) String progressId,
+                                 @RequestParam(value = "layout", required = false) String layout,
                                  RedirectAttributes redirectAttributes) {
+        GenerationProgress progress = progressRegistry.track(progressId);
         try {
-            byte[] pdfBytes = badgeService.generateLabels80x50(file);
-            String fileId = UUID.randomUUID().toString();
-            pdfCache.put(fileId, pdfBytes);
+            String layoutName = layout != null ? layout : LayoutPlans.LABEL_80X50;
+            RosterShards.Strategy strategy = RosterShards.Strategy.parse(shardBy);
+            if (delivery.equals("separate")) {
+                List<ShardService.ShardDownload> downloads = shardService.generateShards(file, layoutName, strategy, shardCount, progress);
+                progress.done();
+                redirectAttributes.addFlashAttribute("success", "Generated " + downloads.size() + " shards, one per printer:");
+                redirectAttributes.addFlashAttribute("shardDownloads", downloads);
+                return "redirect:/";
+            }
+            String fileId = shardService.generateShardArchive(file, layoutName, strategy, shardCount, progress);
+            progress.done();
 
-            redirectAttributes.addFlashAttribute("success", "Labels generated successfully!");
-            return "redirect:/download?fileId=" + fileId + "&filename=labels_80x50.pdf";
+            redirectAttributes.addFlashAttribute("success", "Shards generated successfully!");
+            return "redirect:/download?fileId=" + fileId + "&filename=" + layoutName + "_shards.zip";
         } catch (Exception e) {
+            progress.failed(e.getMessage());
+            renderCancellations.record("/generate-shards", e);
             if (e.getMessage() != null && e.getMessage().contains("No valid attendees found")) {
-                redirectAttributes.addFlashAttribute("error", "No valid rows found in CSV. Please check your file format.");
+                redirectAttributes.addFlashAttribute("error", "No valid rows found in the CSV file. Please check its columns.");
             } else {
                 redirectAttributes.addFlashAttribute("error", "Error: " + e.getMessage());
             }
@@ -142,31 +305,160 @@ public class BadgeController {
         }
     }
 
+    /**
+     * Server-sent events with the progress of the batch submitted with the same progressId.
+     * The stream polls the progress a few times per second, so the render loop never blocks on it.
+     */
+    @GetMapping(value = "/progress/{progressId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter progress(@PathVariable String progressId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(30));
+        if (!progressRegistry.isValidId(progressId)) {
+            emitter.completeWithError(new IllegalArgumentException("Invalid progress id"));
+            return emitter;
+        }
+        GenerationProgress progress = progressRegistry.track(progressId);
+        progress.watched();
+        // Runs once however the stream ends; a render nobody watches any more is cancelled after a grace period.
+        AtomicBoolean closed = new AtomicBoolean();
+        Runnable unwatched = () -> {
+            if (closed.compareAndSet(false, true)) {
+                progress.unwatched();
+            }
+        };
+        ScheduledFuture<?>[] task = new ScheduledFuture<?>[1];
+        AtomicBoolean sending = new AtomicBoolean();
+        Runnable send = () -> {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(progress.snapshot(), MediaType.APPLICATION_JSON));
+                if (progress.isFinished()) {
+                    emitter.complete();
+                    task[0].cancel(false);
+                }
+            } catch (Exception e) {
+                // Client went away; stop polling for it.
+                task[0].cancel(false);
+                unwatched.run();
+            } finally {
+                sending.set(false);
+            }
+        };
+        task[0] = progressTicker.scheduleAtFixedRate(() -> {
+            // One send per stream at a time: a slow client skips ticks instead of queueing them.
+            if (sending.compareAndSet(false, true)) {
+                progressSenders.execute(send);
+            }
+        }, 100, 250, TimeUnit.MILLISECONDS);
+        Runnable stop = () -> {
+            task[0].cancel(false);
+            unwatched.run();
+        };
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(e -> stop.run());
+        return emitter;
+    }
+
+    /**
+     * Sends a stored PDF. Single byte ranges are honoured, so an interrupted download resumes
+     * where it stopped. Files go out via Tomcat's sendfile when the connector supports it,
+     * otherwise via {@link java.nio.channels.FileChannel#transferTo}; neither copies the PDF onto the heap.
+     */
     @GetMapping("/download")
     public void download(
             @RequestParam("fileId") String fileId,
             @RequestParam(value = "filename", required = false) String filename,
+            HttpServletRequest request,
             HttpServletResponse response) throws IOException {
-        byte[] pdfBytes = pdfCache.remove(fileId);
-        if (pdfBytes == null) {
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+        try (StoredResult result = resultStore.open(fileId)) {
+            if (result == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            String safeFilename = sanitizeFilename(filename, "badges.pdf");
+            long size = result.getSize();
+            // Results never change, so the id is a strong validator for If-Range.
+            String etag = "\"" + fileId + "\"";
+
+            // Set response headers
+            response.setContentType(safeFilename.endsWith(".zip") ? "application/zip" : "application/pdf");
+            response.setHeader("Content-Disposition", "attachment; filename=" + safeFilename);
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+            response.setHeader("Pragma", "no-cache");
+            response.setHeader("Expires", "0");
+
+            long start = 0;
+            long end = size - 1;
+            String ifRange = request.getHeader("If-Range");
+            ByteRange range = ifRange == null || ifRange.equals(etag) ? ByteRange.parse(request.getHeader("Range"), size) : null;
+            if (range == ByteRange.UNSATISFIABLE) {
+                response.setHeader("Content-Range", "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (range != null) {
+                start = range.start();
+                end = range.end();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+            long length = end - start + 1;
+            response.setContentLengthLong(length);
+
+            if (result.getFile() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                // Tomcat opens the file itself after we return; the end offset is exclusive.
+                request.setAttribute(SENDFILE_FILENAME, result.getFile().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                return;
+            }
+            try (OutputStream out = response.getOutputStream()) {
+                result.writeTo(start, length, out);
+                out.flush();
+            }
         }
+    }
 
-        String safeFilename = sanitizeFilename(filename, "badges.pdf");
-        
-        // Set response headers
-        response.setContentType("application/pdf");
-        response.setHeader("Content-Disposition", "attachment; filename=" + safeFilename);
-        response.setContentLength(pdfBytes.length);
-        response.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
-        response.setHeader("Pragma", "no-cache");
-        response.setHeader("Expires", "0");
-        
-        // Write the PDF bytes to the response
-        try (OutputStream out = response.getOutputStream()) {
-            out.write(pdfBytes);
-            out.flush();
+    /** An inclusive byte range from a {@code Range: bytes=...} header. */
+    private record ByteRange(long start, long end) {
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        /**
+         * Returns null to send the whole file: no header, a malformed one, or several ranges
+         * (allowed to be ignored). Returns {@link #UNSATISFIABLE} for a range past the end.
+         */
+        static ByteRange parse(String header, long size) {
+            if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+                return null;
+            }
+            String spec = header.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new ByteRange(Math.max(0, size - suffix), size - 1);
+                }
+                long first = Long.parseLong(spec.substring(0, dash));
+                long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                if (first >= size) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(first, Math.min(last, size - 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
     }
 
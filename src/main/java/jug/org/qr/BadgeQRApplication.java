@@ -2,8 +2,10 @@ package jug.org.qr;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(BadgeQRRuntimeHints.class)
 public class BadgeQRApplication {
     public static void main(String[] args) {
         SpringApplication.run(BadgeQRApplication.class, args);
@@ -0,0 +1,28 @@
+package jug.org.qr;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Resources and reflection the native image cannot discover on its own.
+ */
+public class BadgeQRRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Bundled DejaVu fonts, loaded by BadgeService/PDFWithQRCode via getResourceAsStream
+        hints.resources().registerPattern("dejavu-fonts-ttf-2.37/ttf/*.ttf");
+        hints.resources().registerPattern("templates/*.html");
+        // Declarative layouts, read by LayoutPlans via getResourceAsStream
+        hints.resources().registerPattern(LayoutPlans.RESOURCE);
+
+        // iText: built-in font metrics (Helvetica AFM), glyph list and localized error messages
+        hints.resources().registerPattern("com/itextpdf/text/pdf/fonts/*");
+        hints.resources().registerPattern("com/itextpdf/text/l10n/error/*");
+
+        // ZXing's MatrixToImageWriter goes through ImageIO's service lookup for the PNG writer
+        hints.reflection().registerTypeIfPresent(classLoader, "com.sun.imageio.plugins.png.PNGImageWriterSpi",
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
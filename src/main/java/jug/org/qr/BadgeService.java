@@ -2,6 +2,7 @@ package jug.org.qr;
 
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.MultiFormatWriter;
@@ -9,56 +10,78 @@ import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class BadgeService {
 
+    private static final Logger log = LoggerFactory.getLogger(BadgeService.class);
+
     //private static final String LABEL_EVENT_TITLE = "JUG TECH DAY #5";
     //private static final String LABEL_EVENT_TITLE = "Java Day Istanbul 2026";
 
+    // Compact mode: PDF 1.5 object streams + compressed xref, for print shop RIPs that choke on large files.
+    @Value("${badgeqr.pdf.compact:false}")
+    private boolean compactPdf;
 
-    private static final float BADGE_WIDTH = 80f * 2.8346457f; // 80mm in points
-    private static final float BADGE_HEIGHT = 80f * 2.8346457f; // 80mm in points
-    private static final float MARGIN = 5f;
-    private static final float QR_SIZE = 150f;
-    private static final float FONT_SIZE = 22f;
-    private static final float COMPANY_FONT_SIZE = 14f;
+    // Every Nth attendee of a batch logs its stage timings (see PageTimings); 0 turns it off.
+    @Value("${badgeqr.trace.sample-every:1000}")
+    private int traceSampleEvery;
 
-    private static final float LABEL_WIDTH_MM = 80f;
-    private static final float LABEL_HEIGHT_MM = 50f;
-    private static final float LABEL_MARGIN_MM = 5f;  // 0.5 cm = 5mm on all sides
-    private static final float LABEL_MARGIN_PT = LABEL_MARGIN_MM * 72f / 25.4f; // 5mm = ~14pt
+    // Not set when the CLI constructs the service itself.
+    @Autowired
+    private RosterIndex rosterIndex;
 
-    // No vertical shift - content centered with equal margins on all sides
-    private static final float LABEL_TOP_SHIFT_MM = 0f;
+    @Autowired
+    private BatchJournal batchJournal;
+
+    /** Entry names in the archive of {@link #generateBadgesAndLabels}. */
+    public static final String BADGES_ENTRY = "badges_80x80.pdf";
+    public static final String LABELS_ENTRY = "labels_80x50.pdf";
 
     private File tempFontFile;
-    private Font nameFont;
-    private Font companyFont;
+    private LayoutPlans layoutPlans;
 
-    public BadgeService() {
-        try {
-            // Load fonts once and reuse them
-            BaseFont baseFont = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.EMBEDDED);
-            nameFont = new Font(baseFont, FONT_SIZE, Font.BOLD);
-            companyFont = new Font(baseFont, COMPANY_FONT_SIZE);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize fonts", e);
-        }
-    }
+    // Second and third threads of badges+labels batches: one per layout while the request thread encodes.
+    private final ExecutorService layoutPool = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "badgeqr-layout");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @PostConstruct
     public void initFonts() throws Exception {
@@ -69,332 +92,834 @@ public class BadgeService {
             fontStream.transferTo(out);
         }
         BaseFont baseFont = BaseFont.createFont(tempFontFile.getAbsolutePath(), BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-        nameFont = new Font(baseFont, 22, Font.BOLD);
-        companyFont = new Font(baseFont, 14);
+        // Page geometry and fonts for every layout are resolved once here, never per page.
+        layoutPlans = LayoutPlans.load(baseFont);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        layoutPool.shutdownNow();
+    }
+
+    /**
+     * Renders one page per attendee using the named layout from {@code badge-layouts.json}.
+     * The upload may be a CSV file or an Excel workbook (.xlsx).
+     *
+     * With a {@code jobKey} (see {@link RecentBatches#key}), the render is checkpointed in the
+     * {@link BatchJournal}: if an earlier run of the same batch was cut short, it resumes from
+     * its last completed segment.
+     */
+    public void generateBatch(MultipartFile file, String layoutName, GenerationProgress progress,
+                              OutputStream out, String jobKey) throws Exception {
+        withRoster(file, progress, (attendees, source) ->
+                renderBatch(attendees, source, layoutName, progress, out, jobKey));
+    }
+
+    /**
+     * Renders 80x80 badges and 80x50 labels of one upload in a single pass and writes them to
+     * {@code out} as a ZIP holding both PDFs. Each row is parsed and its QR code encoded once;
+     * the two documents are laid out concurrently from the same pages.
+     */
+    public void generateBadgesAndLabels(MultipartFile file, GenerationProgress progress, OutputStream out) throws Exception {
+        withRoster(file, progress, (attendees, source) -> {
+            RenderEvents.Batch batch = new RenderEvents.Batch();
+            batch.begin();
+            if (!attendees.hasNext()) {
+                throw new IllegalArgumentException("No valid attendees found in " + source);
+            }
+            RosterIndex.Builder index = rosterIndex != null ? rosterIndex.newBuilder() : null;
+            Path badges = Files.createTempFile("badgeqr-badges", ".pdf");
+            Path labels = Files.createTempFile("badgeqr-labels", ".pdf");
+            try {
+                int pages;
+                try (OutputStream badgesOut = new BufferedOutputStream(Files.newOutputStream(badges), 1 << 16);
+                     OutputStream labelsOut = new BufferedOutputStream(Files.newOutputStream(labels), 1 << 16)) {
+                    pages = writeTwoLayouts(index != null ? index.indexing(attendees) : attendees,
+                            layoutPlans.get(LayoutPlans.BADGE_80X80), badgesOut,
+                            layoutPlans.get(LayoutPlans.LABEL_80X50), labelsOut, progress);
+                }
+                reportOutputSize(LayoutPlans.BADGE_80X80, pages, Files.size(badges));
+                reportOutputSize(LayoutPlans.LABEL_80X50, pages, Files.size(labels));
+
+                ZipOutputStream zip = new ZipOutputStream(out);
+                // The PDFs are compressed already; deflating them again only costs time.
+                zip.setLevel(Deflater.NO_COMPRESSION);
+                zip.putNextEntry(new ZipEntry(BADGES_ENTRY));
+                Files.copy(badges, zip);
+                zip.closeEntry();
+                zip.putNextEntry(new ZipEntry(LABELS_ENTRY));
+                Files.copy(labels, zip);
+                zip.closeEntry();
+                zip.finish();
+
+                batch.layout = LayoutPlans.BADGE_80X80 + "+" + LayoutPlans.LABEL_80X50;
+                batch.pages = pages * 2;
+                batch.bytes = Files.size(badges) + Files.size(labels);
+            } finally {
+                Files.deleteIfExists(badges);
+                Files.deleteIfExists(labels);
+            }
+            if (index != null) {
+                rosterIndex.publish(index);
+            }
+            batch.commit();
+        });
+    }
+
+    @FunctionalInterface
+    private interface RosterRender {
+        void render(Iterator<Attendee> attendees, String source) throws Exception;
+    }
+
+    /** Hands the attendees of an uploaded CSV file or Excel workbook to {@code render}, read as it asks for them. */
+    private void withRoster(MultipartFile file, GenerationProgress progress, RosterRender render) throws Exception {
+        if (isXlsx(file)) {
+            withXlsxRoster(file, progress, render);
+            return;
+        }
+        // Large uploads are spooled to disk by the container; stream them from there.
+        try (InputStream csv = file.getInputStream()) {
+            render.render(new AttendeeCsvReader(csv, progress), "CSV");
+        }
+    }
+
+    /** Excel workbooks are zip packages; CSV never starts with the zip signature. */
+    private static boolean isXlsx(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4;
+        }
+    }
+
+    private void withXlsxRoster(MultipartFile file, GenerationProgress progress, RosterRender render) throws Exception {
+        // Zip entries are found through the central directory at the end, so the reader needs a file.
+        // Copied rather than transferTo(), which would move the container's spool file away.
+        Path workbook = Files.createTempFile("badgeqr-roster", ".xlsx");
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, workbook, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (AttendeeXlsxReader attendees = new AttendeeXlsxReader(workbook, progress)) {
+                render.render(attendees, "Excel sheet");
+            }
+        } finally {
+            Files.deleteIfExists(workbook);
+        }
+    }
+
+    /**
+     * Renders one page per CSV row to {@code out}, which is closed when the PDF is complete.
+     * Rows are parsed as pages are rendered, so rendering starts with the first row rather
+     * than after the whole roster has been read. A {@code jobKey} journals the render as for uploads.
+     */
+    public void generateBatch(InputStream csv, String layoutName, GenerationProgress progress,
+                              OutputStream out, String jobKey) throws Exception {
+        renderBatch(new AttendeeCsvReader(csv, progress), "CSV", layoutName, progress, out, jobKey);
+    }
+
+    private void renderBatch(Iterator<Attendee> attendees, String source, String layoutName,
+                             GenerationProgress progress, OutputStream out, String jobKey) throws Exception {
+        RenderEvents.Batch batch = new RenderEvents.Batch();
+        batch.begin();
+        LayoutPlan plan = layoutPlans.get(layoutName);
+        if (!attendees.hasNext()) {
+            throw new IllegalArgumentException("No valid attendees found in " + source);
+        }
+
+        // Index the roster for desk search as it streams by; it replaces the previous one only once the batch succeeds.
+        RosterIndex.Builder index = rosterIndex != null ? rosterIndex.newBuilder() : null;
+        CountingOutputStream counted = new CountingOutputStream(out);
+        Iterator<Attendee> roster = index != null ? index.indexing(attendees) : attendees;
+        int pages = jobKey != null && batchJournal != null && batchJournal.isEnabled()
+                ? writeJournaled(roster, plan, counted, progress, batchJournal.open(jobKey, layoutName, getOutputVersion(layoutName)))
+                : writePages(roster, plan, counted, progress, null);
+        reportOutputSize(layoutName, pages, counted.count);
+        if (index != null) {
+            rosterIndex.publish(index);
+        }
+        batch.layout = layoutName;
+        batch.pages = pages;
+        batch.bytes = counted.count;
+        batch.commit();
+    }
+
+    public LayoutPlan getLayoutPlan(String layoutName) {
+        return layoutPlans.get(layoutName);
+    }
+
+    /** Identifies everything besides the roster that shapes a batch PDF: the layout definition and compact mode. */
+    public String getOutputVersion(String layoutName) {
+        return layoutPlans.version(layoutName) + (compactPdf ? "-compact" : "");
+    }
+
+    public void setCompactPdf(boolean compactPdf) {
+        this.compactPdf = compactPdf;
     }
 
-    public byte[] generateBadges(MultipartFile file) throws Exception {
-        List<Attendee> attendees = readAttendeesFromCSV(file);
+    /**
+     * Writes one page per attendee to {@code out} and returns the page count. With a
+     * {@code qrPool}, QR codes are encoded on it ahead of the page being laid out; without one
+     * they are encoded inline. {@code attendees} must not be empty.
+     */
+    public int writePages(Iterator<Attendee> attendees, LayoutPlan plan, OutputStream out,
+                          GenerationProgress progress, ExecutorService qrPool) throws Exception {
+        return renderPages(attendees, 0, plan, out, progress, qrPool, true);
+    }
+
+    /**
+     * Writes one shard of a sharded batch on its own Document/PdfWriter, so shards can render
+     * concurrently. Only counts pages on {@code progress}; the caller reports the phases for all shards.
+     */
+    public int writeShard(List<Attendee> attendees, LayoutPlan plan, OutputStream out,
+                          GenerationProgress progress) throws Exception {
+        return renderPages(attendees.iterator(), 0, plan, out, progress, null, false);
+    }
+
+    /**
+     * Indexes an upload for desk search without rendering it: a reused result skips the render,
+     * which would otherwise leave the desk searching whichever roster was rendered last.
+     */
+    public void indexRoster(MultipartFile file) throws Exception {
+        if (rosterIndex != null) {
+            withRoster(file, new GenerationProgress(), (attendees, source) -> indexRoster(attendees));
+        }
+    }
+
+    public void indexRoster(InputStream csv) {
+        if (rosterIndex != null) {
+            indexRoster(new AttendeeCsvReader(csv, new GenerationProgress()));
+        }
+    }
+
+    private void indexRoster(Iterator<Attendee> attendees) {
+        RosterIndex.Builder index = rosterIndex.newBuilder();
+        attendees.forEachRemaining(index::add);
+        rosterIndex.publish(index);
+    }
+
+    /** Reads the whole roster, for callers that need every row before rendering (e.g. sharding). */
+    public List<Attendee> readAttendees(InputStream csv, GenerationProgress progress) {
+        AttendeeCsvReader reader = new AttendeeCsvReader(csv, progress);
+        List<Attendee> attendees = new ArrayList<>();
+        reader.forEachRemaining(attendees::add);
         if (attendees.isEmpty()) {
             throw new IllegalArgumentException("No valid attendees found in CSV");
         }
+        if (rosterIndex != null) {
+            RosterIndex.Builder index = rosterIndex.newBuilder();
+            attendees.forEach(index::add);
+            rosterIndex.publish(index);
+        }
+        return attendees;
+    }
+
+    /**
+     * Renders the journaled batch segment by segment: attendees up to the job's checkpoint are
+     * only read past, the rest are rendered to segment files, and the segments are joined into
+     * {@code out}. Returns the page count of the whole PDF.
+     */
+    private int writeJournaled(Iterator<Attendee> attendees, LayoutPlan plan, OutputStream out,
+                               GenerationProgress progress, BatchJournal.Job job) throws Exception {
+        int resumeAt = job.checkpoint();
+        int skipped = 0;
+        while (skipped < resumeAt && attendees.hasNext()) {
+            attendees.next();
+            skipped++;
+        }
+        if (skipped < resumeAt) {
+            job.delete();
+            throw new IllegalStateException("Render journal is ahead of the roster; please generate again");
+        }
+        if (resumeAt > 0) {
+            log.info("Resuming {} batch at attendee {} from {} rendered segments", plan.getName(), resumeAt, job.segments());
+        }
 
-        // 80mm x 80mm page size setup
-        float mmToPoints = 72f / 25.4f;
-        float pageWidth = 80f * mmToPoints;
-        float pageHeight = 80f * mmToPoints;
-        Document document = new Document(new Rectangle(pageWidth, pageHeight));
+        progress.renderingStarted();
+        progress.pagesResumed(resumeAt);
+        int pages = resumeAt;
+        for (int segment = job.segments(); attendees.hasNext(); segment++) {
+            Path pending = job.pendingSegment(segment);
+            int segmentPages;
+            try (OutputStream segmentOut = new BufferedOutputStream(Files.newOutputStream(pending), 1 << 16)) {
+                segmentPages = renderPages(limit(attendees, job.segmentPages()), pages, plan, segmentOut,
+                        progress, null, false);
+            }
+            job.commitSegment(segment, segmentPages);
+            pages += segmentPages;
+        }
+        progress.finishing();
 
-        // Get current date and time for filename
-        String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-        document.setMargins(5f, 5f, 5f, 5f);
+        joinSegments(job, out);
+        job.delete();
+        return pages;
+    }
 
-        // Create a ByteArrayOutputStream to hold the PDF
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, outputStream);
+    /** Copies the segments into one PDF. A single segment already is the PDF and goes out as it is. */
+    private void joinSegments(BatchJournal.Job job, OutputStream out) throws Exception {
+        if (job.segments() == 1) {
+            Files.copy(job.segment(0), out);
+            out.close();
+            return;
+        }
+        Document document = new Document();
+        PdfCopy copy = new PdfCopy(document, out);
+        applyCompact(copy);
         document.open();
+        RandomAccessSourceFactory sources = new RandomAccessSourceFactory();
+        for (int i = 0; i < job.segments(); i++) {
+            // Partial reading: objects are loaded as pages are copied, not the whole segment up front.
+            PdfReader reader = new PdfReader(new RandomAccessFileOrArray(
+                    sources.createBestSource(job.segment(i).toString())), null);
+            try {
+                copy.addDocument(reader);
+                copy.freeReader(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        document.close();
+    }
 
-        for (int i = 0; i < attendees.size(); i++) {
-            addBadgeToDocument(document, attendees.get(i));
-            if (i < attendees.size() - 1) {
-                document.newPage();
+    /** At most {@code max} attendees of {@code attendees}, without reading past them. */
+    private static Iterator<Attendee> limit(Iterator<Attendee> attendees, int max) {
+        return new Iterator<>() {
+            private int taken;
+
+            @Override
+            public boolean hasNext() {
+                return taken < max && attendees.hasNext();
+            }
+
+            @Override
+            public Attendee next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                taken++;
+                return attendees.next();
+            }
+        };
+    }
+
+    /**
+     * Writes one page per attendee in both layouts, each document on a thread of its own, and
+     * returns the page count of each. This thread reads the attendees and encodes their QR codes
+     * once for both, handing the pages on through bounded queues.
+     */
+    private int writeTwoLayouts(Iterator<Attendee> attendees, LayoutPlan first, OutputStream firstOut,
+                                LayoutPlan second, OutputStream secondOut, GenerationProgress progress) throws Exception {
+        progress.pagesPerRow(2);
+        PageQueue firstPages = new PageQueue();
+        PageQueue secondPages = new PageQueue();
+        Future<Integer> firstDone = layoutPool.submit(() -> renderQueued(firstPages, first, firstOut, progress));
+        Future<Integer> secondDone = layoutPool.submit(() -> renderQueued(secondPages, second, secondOut, progress));
+        progress.renderingStarted();
+        try {
+            QrImageSource qrImages = new QrImageSource(attendees, 0, null);
+            while (qrImages.hasNext()) {
+                progress.checkCancelled();
+                QueuedPage page = qrImages.next();
+                Image qrImage = page.qrImage();
+                // Laying out scales the image to the layout, on the instance; each document gets a copy.
+                // Copies keep the serial id, so identical codes still share one XObject within a PDF.
+                firstPages.put(new QueuedPage(page.index(), page.attendee(),
+                        CompletableFuture.completedFuture(Image.getInstance(qrImage)), page.timings()));
+                secondPages.put(new QueuedPage(page.index(), page.attendee(),
+                        CompletableFuture.completedFuture(Image.getInstance(qrImage)), null));
             }
+            firstPages.end();
+            secondPages.end();
+            int pages = firstDone.get();
+            secondDone.get();
+            progress.finishing();
+            return pages;
+        } catch (Exception e) {
+            firstPages.stop();
+            secondPages.stop();
+            // The layout threads write to the caller's streams until they return; the caller closes them next.
+            awaitStopped(firstDone);
+            awaitStopped(secondDone);
+            throw renderFailure(e, firstDone, secondDone);
         }
+    }
 
-        document.close();
-        byte[] pdfBytes = outputStream.toByteArray();
-        
-        // Clean up
-        document = null;
-        outputStream.close();
-        outputStream = null;
-        attendees.clear();
-        attendees = null;
-        
-        return pdfBytes;
+    private int renderQueued(PageQueue pages, LayoutPlan plan, OutputStream out, GenerationProgress progress) throws Exception {
+        try {
+            return renderPages(pages, plan, out, progress, false);
+        } catch (PageQueue.Stopped e) {
+            // The encoder failed; its exception is the one reported.
+            return -1;
+        } finally {
+            pages.abandon();
+        }
     }
 
-    public byte[] generateLabels80x50(MultipartFile file) throws Exception {
-        List<Attendee> attendees = readAttendeesFromCSV(file);
-        if (attendees.isEmpty()) {
-            throw new IllegalArgumentException("No valid attendees found in CSV");
+    private static void awaitStopped(Future<?> render) {
+        try {
+            render.get();
+        } catch (ExecutionException | CancellationException e) {
+            // Reported by renderFailure.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
-        float mmToPoints = 72f / 25.4f;
-        float pageWidth = LABEL_WIDTH_MM * mmToPoints;
-        float pageHeight = LABEL_HEIGHT_MM * mmToPoints;
+    /** The failure of a layout thread if one failed, since it is what stopped the other side; else {@code e}. */
+    private static Exception renderFailure(Exception e, Future<?>... renders) {
+        for (Future<?> render : renders) {
+            if (render.isDone() && !render.isCancelled()) {
+                try {
+                    render.get();
+                } catch (ExecutionException failed) {
+                    if (failed.getCause() instanceof Exception cause) {
+                        return cause;
+                    }
+                } catch (InterruptedException | CancellationException ignored) {
+                    // Fall back to e.
+                }
+            }
+        }
+        return e instanceof ExecutionException && e.getCause() instanceof Exception cause ? cause : e;
+    }
 
-        Document document = new Document(new Rectangle(pageWidth, pageHeight));
-        document.setMargins(LABEL_MARGIN_PT, LABEL_MARGIN_PT, LABEL_MARGIN_PT, LABEL_MARGIN_PT);
+    private int renderPages(Iterator<Attendee> attendees, int firstIndex, LayoutPlan plan, OutputStream out,
+                            GenerationProgress progress, ExecutorService qrPool, boolean reportPhases) throws Exception {
+        return renderPages(new QrImageSource(attendees, firstIndex, qrPool), plan, out, progress, reportPhases);
+    }
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, outputStream);
+    private int renderPages(PageSource qrImages, LayoutPlan plan, OutputStream out,
+                            GenerationProgress progress, boolean reportPhases) throws Exception {
+        Document document = newDocument(plan);
+        createWriter(document, out);
         document.open();
 
-        for (int i = 0; i < attendees.size(); i++) {
-            addLabel80x50ToDocument(document, attendees.get(i));
-            if (i < attendees.size() - 1) {
+        if (reportPhases) {
+            progress.renderingStarted();
+        }
+        int pages = 0;
+        while (qrImages.hasNext()) {
+            // Between pages: a cancelled batch stops here, and its partial output is discarded.
+            progress.checkCancelled();
+            QueuedPage page = qrImages.next();
+            PdfPTable table = layOut(plan, page);
+
+            long start = System.nanoTime();
+            RenderEvents.PageWrite event = new RenderEvents.PageWrite();
+            event.begin();
+            if (pages > 0) {
                 document.newPage();
             }
+            document.add(table);
+            event.layout = plan.getName();
+            event.commitFor(page.index());
+            page.written(plan, System.nanoTime() - start);
+
+            pages++;
+            progress.pageRendered();
         }
 
+        if (reportPhases) {
+            progress.finishing();
+        }
         document.close();
-        byte[] pdfBytes = outputStream.toByteArray();
-        outputStream.close();
-        attendees.clear();
-        return pdfBytes;
+        return pages;
     }
 
-    private List<Attendee> readAttendeesFromCSV(MultipartFile csvFile) throws Exception {
-        List<Attendee> attendees = new ArrayList<>();
-        
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(csvFile.getInputStream()))) {
-            String line;
-            boolean firstLine = true;
-            int lineNumber = 0;
-            int validRows = 0;
-            int skippedRows = 0;
-
-            while ((line = br.readLine()) != null) {
-                lineNumber++;
-                if (firstLine) {
-                    firstLine = false;
-                    continue;
+    /**
+     * Writes the attendees as tiles of {@code tile} imposed on {@code paper} sheets, as many
+     * columns and rows as fit, centred. For printing badges on A4 and cutting them out.
+     */
+    public void writeSheets(Iterator<Attendee> attendees, LayoutPlan tile, Rectangle paper, OutputStream out,
+                            GenerationProgress progress, ExecutorService qrPool) throws Exception {
+        float tileWidth = tile.getPageSize().getWidth();
+        float tileHeight = tile.getPageSize().getHeight();
+        int columns = (int) (paper.getWidth() / tileWidth);
+        int rows = (int) (paper.getHeight() / tileHeight);
+        if (columns == 0 || rows == 0) {
+            throw new IllegalArgumentException("Layout " + tile.getName() + " does not fit on the sheet");
+        }
+        float offsetX = (paper.getWidth() - columns * tileWidth) / 2;
+        float offsetY = (paper.getHeight() - rows * tileHeight) / 2;
+        int perSheet = columns * rows;
+
+        Document document = new Document(paper);
+        document.setMargins(0f, 0f, 0f, 0f);
+        PdfWriter writer = createWriter(document, out);
+        document.open();
+        PdfContentByte canvas = writer.getDirectContent();
+
+        QrImageSource qrImages = new QrImageSource(attendees, 0, qrPool);
+        progress.renderingStarted();
+        for (int i = 0; qrImages.hasNext(); i++) {
+            progress.checkCancelled();
+            QueuedPage page = qrImages.next();
+            int slot = i % perSheet;
+            if (slot == 0 && i > 0) {
+                document.newPage();
+            }
+            float x = offsetX + (slot % columns) * tileWidth + tile.getMargin();
+            float top = paper.getHeight() - offsetY - (slot / columns) * tileHeight - tile.getMargin();
+
+            PdfPTable table = layOut(tile, page);
+            table.setTotalWidth(tile.getContentWidth());
+            table.setLockedWidth(true);
+
+            long start = System.nanoTime();
+            RenderEvents.PageWrite event = new RenderEvents.PageWrite();
+            event.begin();
+            table.writeSelectedRows(0, -1, x, top, canvas);
+            event.layout = tile.getName();
+            event.commitFor(page.index());
+            page.written(tile, System.nanoTime() - start);
+            progress.pageRendered();
+        }
+
+        progress.finishing();
+        document.close();
+    }
+
+    /**
+     * Parses one {@code Name,LinkedInOrEmail,Company} row (comma or semicolon separated).
+     * Returns null for blank rows and rows missing the name or the LinkedIn/email column.
+     */
+    static Attendee parseCsvRow(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+
+        // Try both delimiters
+        String[] columns = line.contains(";") ? line.split(";", -1) : line.split(",", -1);
+        if (columns.length < 3) {
+            return null;
+        }
+        return toAttendee(columns[0], columns[1], columns[2]);
+    }
+
+    /**
+     * Builds an attendee from the Name, LinkedInOrEmail and Company columns of any roster format.
+     * Returns null when the name or the LinkedIn/email column is missing.
+     */
+    static Attendee toAttendee(String fullNameColumn, String linkedinColumn, String companyColumn) {
+        String fullName = fullNameColumn != null ? fullNameColumn.trim() : "";
+        String linkedin = linkedinColumn != null ? linkedinColumn.trim() : "";
+        String company = companyColumn != null ? companyColumn.trim() : "";
+
+        // Skip rows with missing required fields
+        if (fullName.isEmpty() || linkedin.isEmpty()) {
+            return null;
+        }
+
+        String[] nameParts = fullName.split(" ", 2);
+        String name = nameParts.length > 0 ? nameParts[0] : "";
+        String surname = nameParts.length > 1 ? nameParts[1] : "";
+        return new Attendee(name, surname, linkedin, company);
+    }
+
+    private PdfWriter createWriter(Document document, OutputStream outputStream) throws DocumentException {
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        applyCompact(writer);
+        return writer;
+    }
+
+    private void applyCompact(PdfWriter writer) throws DocumentException {
+        if (compactPdf) {
+            // Both must be set before the document is opened.
+            writer.setPdfVersion(PdfWriter.VERSION_1_5);
+            writer.setFullCompression();
+            writer.setCompressionLevel(PdfStream.BEST_COMPRESSION);
+        }
+    }
+
+    private void reportOutputSize(String kind, int pages, long bytes) {
+        System.out.println("Generated " + kind + " PDF: " + pages + " pages, " + bytes + " bytes"
+                + (compactPdf ? " (compact)" : ""));
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * An attendee taken from the batch, with its position in the roster and its QR image (possibly
+     * still being encoded). {@code timings} is set for sampled attendees only.
+     */
+    private record QueuedPage(int index, Attendee attendee, Future<Image> qrImageFuture, PageTimings timings) {
+        Image qrImage() throws Exception {
+            long start = System.nanoTime();
+            try {
+                return qrImageFuture.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                if (timings != null) {
+                    timings.qrWaitNanos = System.nanoTime() - start;
                 }
+            }
+        }
+
+        void written(LayoutPlan plan, long writeNanos) {
+            if (timings != null) {
+                timings.writeNanos = writeNanos;
+                timings.log(plan.getName(), index);
+            }
+        }
+    }
+
+    private PdfPTable layOut(LayoutPlan plan, QueuedPage page) throws Exception {
+        Image qrImage = page.qrImage();
+        long start = System.nanoTime();
+        RenderEvents.Layout event = new RenderEvents.Layout();
+        event.begin();
+        PdfPTable table = buildPageTable(plan, page.attendee(), qrImage);
+        event.layout = plan.getName();
+        event.commitFor(page.index());
+        if (page.timings() != null) {
+            page.timings().layoutNanos = System.nanoTime() - start;
+        }
+        return table;
+    }
+
+    /** Pages in attendee order, each with its QR image; read by a single layout thread. */
+    private interface PageSource {
+        boolean hasNext() throws Exception;
+
+        QueuedPage next() throws Exception;
+    }
 
-                if (line.trim().isEmpty()) {
-                    skippedRows++;
-                    continue;
+    /**
+     * Pages handed from the thread encoding QR codes to one layout's render thread. Bounded, so
+     * the slower layout holds the encoder back instead of pages piling up on the heap.
+     */
+    private static final class PageQueue implements PageSource {
+        private static final int CAPACITY = 64;
+        private static final QueuedPage END = new QueuedPage(-1, null, null, null);
+
+        private final BlockingQueue<QueuedPage> pages = new ArrayBlockingQueue<>(CAPACITY);
+        private volatile boolean abandoned;
+        private volatile boolean stopped;
+        private QueuedPage head;
+
+        /** Thrown to the render thread once the encoder has stopped the queue. */
+        static final class Stopped extends CancellationException {
+            private static final long serialVersionUID = 1L;
+
+            Stopped() {
+                super("Encoder stopped");
+            }
+        }
+
+        void put(QueuedPage page) throws InterruptedException {
+            while (!pages.offer(page, 100, TimeUnit.MILLISECONDS)) {
+                if (abandoned) {
+                    throw new CancellationException("Layout thread stopped");
                 }
+            }
+        }
 
-                // Try both delimiters
-                String[] columns = line.contains(";") ? line.split(";", -1) : line.split(",", -1);
+        void end() throws InterruptedException {
+            put(END);
+        }
 
-                if (columns.length >= 3) {
-                    String fullName = columns[0] != null ? columns[0].trim() : "";
-                    String linkedin = columns[1] != null ? columns[1].trim() : "";
-                    String company = columns[2] != null ? columns[2].trim() : "";
+        /** Called by the render thread when it stops, so the encoder never waits on a full queue for it. */
+        void abandon() {
+            abandoned = true;
+            pages.clear();
+        }
 
-                    // Skip rows with missing required fields
-                    if (fullName.isEmpty() || linkedin.isEmpty()) {
-                        skippedRows++;
-                        continue;
-                    }
+        /** Called by the encoder when it fails, so the render thread stops at its next page. */
+        void stop() {
+            stopped = true;
+        }
 
-                    String[] nameParts = fullName.split(" ", 2);
-                    String name = nameParts.length > 0 ? nameParts[0] : "";
-                    String surname = nameParts.length > 1 ? nameParts[1] : "";
-                    
-                    attendees.add(new Attendee(name, surname, linkedin, company));
-                    validRows++;
-                } else {
-                    skippedRows++;
+        @Override
+        public boolean hasNext() throws InterruptedException {
+            while (true) {
+                if (stopped) {
+                    throw new Stopped();
+                }
+                if (head != null) {
+                    return head != END;
                 }
+                head = pages.poll(100, TimeUnit.MILLISECONDS);
             }
+        }
 
-            System.out.println("Processed CSV: " + validRows + " valid rows, " + skippedRows + " rows skipped");
+        @Override
+        public QueuedPage next() throws InterruptedException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            QueuedPage page = head;
+            head = null;
+            return page;
         }
+    }
 
-        return attendees;
+    /**
+     * The attendees of a batch in order, paired with their QR images. Identical payloads among the
+     * last {@link #RECENT_PAYLOADS} share one Image instance, so iText writes a single image
+     * XObject for them; the window keeps memory flat however long the roster is.
+     *
+     * With a pool, encoding runs up to {@link #LOOKAHEAD_PER_THREAD} pages per thread ahead of
+     * the (single-threaded) layout; only the layout thread touches this object.
+     */
+    private final class QrImageSource implements PageSource {
+        private static final int LOOKAHEAD_PER_THREAD = 8;
+        private static final int RECENT_PAYLOADS = 256;
+
+        private final Iterator<Attendee> attendees;
+        private final ExecutorService pool;
+        private final int lookahead;
+        private final Map<String, Future<Image>> byPayload = new LinkedHashMap<>(RECENT_PAYLOADS * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<Image>> eldest) {
+                return size() > RECENT_PAYLOADS;
+            }
+        };
+        private final ArrayDeque<QueuedPage> pending = new ArrayDeque<>();
+        private int taken;
+
+        QrImageSource(Iterator<Attendee> attendees, int firstIndex, ExecutorService pool) {
+            this.attendees = attendees;
+            this.taken = firstIndex;
+            this.pool = pool;
+            this.lookahead = pool == null ? 1 : LOOKAHEAD_PER_THREAD * Runtime.getRuntime().availableProcessors();
+        }
+
+        @Override
+        public boolean hasNext() throws Exception {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public QueuedPage next() throws Exception {
+            fill();
+            return pending.removeFirst();
+        }
+
+        private void fill() throws Exception {
+            while (pending.size() < lookahead && attendees.hasNext()) {
+                Attendee attendee = attendees.next();
+                int index = taken++;
+                PageTimings timings = PageTimings.sample(index, traceSampleEvery);
+                pending.addLast(new QueuedPage(index, attendee, submit(attendee, index, timings), timings));
+            }
+        }
+
+        private Future<Image> submit(Attendee attendee, int index, PageTimings timings) throws Exception {
+            long start = System.nanoTime();
+            RenderEvents.VCard event = new RenderEvents.VCard();
+            event.begin();
+            String qrPayload = generateVCard(attendee);
+            event.commitFor(index);
+            if (timings != null) {
+                timings.vcardNanos = System.nanoTime() - start;
+            }
+
+            Future<Image> image = byPayload.get(qrPayload);
+            if (image == null) {
+                if (pool == null) {
+                    image = CompletableFuture.completedFuture(encodeQr(qrPayload, index, timings));
+                } else {
+                    image = pool.submit(() -> encodeQr(qrPayload, index, timings));
+                }
+                byPayload.put(qrPayload, image);
+            }
+            return image;
+        }
+
+        private Image encodeQr(String qrPayload, int index, PageTimings timings) throws Exception {
+            long start = System.nanoTime();
+            RenderEvents.QrEncode event = new RenderEvents.QrEncode();
+            event.begin();
+            Image image = generateQRCodeImage(qrPayload);
+            event.payloadLength = qrPayload.length();
+            event.commitFor(index);
+            if (timings != null) {
+                timings.qrNanos = System.nanoTime() - start;
+            }
+            return image;
+        }
     }
 
-    private void addBadgeToDocument(Document document, Attendee attendee) throws Exception {
-        BaseFont baseFont = nameFont.getBaseFont();
+    private static Document newDocument(LayoutPlan plan) {
+        Document document = new Document(new Rectangle(plan.getPageSize()));
+        float margin = plan.getMargin();
+        document.setMargins(margin, margin, margin, margin);
+        return document;
+    }
 
+    /** The page content for one attendee, sized to the plan's content box. */
+    private PdfPTable buildPageTable(LayoutPlan plan, Attendee attendee, Image qrImage) {
         String nameSurname = attendee.getNameSurname() == null ? "" : attendee.getNameSurname().trim();
         String company = attendee.getCompany() == null ? "" : attendee.getCompany().trim();
 
-        int nameLen = nameSurname.length();
-        int nameFontSize;
-        if (nameLen > 28) {
-            nameFontSize = 14;
-        } else if (nameLen > 20) {
-            nameFontSize = 16;
-        } else if (nameLen > 14) {
-            nameFontSize = 18;
-        } else {
-            nameFontSize = 22;
-        }
-
-        int companyLen = company.length();
-        int companyFontSize;
-        if (companyLen > 34) {
-            companyFontSize = 10;
-        } else if (companyLen > 24) {
-            companyFontSize = 12;
-        } else {
-            companyFontSize = 14;
-        }
-
-        Font localNameFont = new Font(baseFont, nameFontSize, Font.BOLD);
-        Font localCompanyFont = new Font(baseFont, companyFontSize);
-
-        float contentHeight = document.getPageSize().getHeight() - document.topMargin() - document.bottomMargin();
-        float contentWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
-
-        // Use a fixed-height table so name/company never push the QR onto a new page.
-        PdfPTable layout = new PdfPTable(1);
-        layout.setWidthPercentage(100);
-
-        PdfPCell nameCell = new PdfPCell(new Phrase(nameSurname, localNameFont));
-        nameCell.setBorder(Rectangle.NO_BORDER);
-        nameCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        nameCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        nameCell.setFixedHeight(contentHeight * 0.22f);
-        nameCell.setPaddingTop(2f);
-        nameCell.setPaddingBottom(2f);
-        nameCell.setNoWrap(false);
-
-        PdfPCell companyCell = new PdfPCell(new Phrase(company, localCompanyFont));
-        companyCell.setBorder(Rectangle.NO_BORDER);
-        companyCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        companyCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        companyCell.setFixedHeight(contentHeight * 0.16f);
-        companyCell.setPaddingTop(0f);
-        companyCell.setPaddingBottom(2f);
-        companyCell.setNoWrap(false);
-
-        String qrPayload = generateVCard(attendee);
-        Image qrImage = generateQRCodeImage(qrPayload);
-        float qrTarget = Math.min(contentWidth, contentHeight * 0.62f);
-        qrImage.scaleToFit(qrTarget, qrTarget);
-
-        PdfPCell qrCell = new PdfPCell(qrImage, true);
-        qrCell.setBorder(Rectangle.NO_BORDER);
-        qrCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        qrCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        qrCell.setFixedHeight(contentHeight * 0.62f);
-        qrCell.setPaddingTop(2f);
-        qrCell.setPaddingBottom(2f);
-
-        layout.addCell(nameCell);
-        layout.addCell(companyCell);
-        layout.addCell(qrCell);
-
-        document.add(layout);
-    }
-
-    private void addLabel80x50ToDocument(Document document, Attendee attendee) throws Exception {
-        BaseFont baseFont = nameFont.getBaseFont();
+        LayoutPlan.Variant variant = plan.variantFor(nameSurname.length());
 
-        String nameSurname = attendee.getNameSurname() == null ? "" : attendee.getNameSurname().trim();
-        String company = attendee.getCompany() == null ? "" : attendee.getCompany().trim();
+        // Fixed-height cells so name/company never push the QR onto a new page.
+        PdfPTable body = new PdfPTable(1);
+        body.setWidthPercentage(100);
 
-        System.out.println("[DEBUG PDF] Adding to PDF - nameSurname: '" + nameSurname + "' (length: " + nameSurname.length() + ")");
-        System.out.println("[DEBUG PDF] attendee.getName(): '" + attendee.getName() + "'");
-        System.out.println("[DEBUG PDF] attendee.getSurname(): '" + attendee.getSurname() + "'");
-
-        int nameSize;
-        int nameLen = nameSurname.length();
-        // Larger title size to match screenshot; still downscale for long names.
-        if (nameLen > 34) {
-            nameSize = 14;
-        } else if (nameLen > 28) {
-            nameSize = 16;
-        } else if (nameLen > 22) {
-            nameSize = 18;
-        } else if (nameLen > 18) {
-            nameSize = 18;  // Reduced from 20 to prevent wrapping
-        } else if (nameLen > 14) {
-            nameSize = 20;  // Swapped with above
-        } else {
-            nameSize = 24;
-        }
-
-        int companySize;
-        int companyLen = company.length();
-        if (companyLen > 34) {
-            companySize = 11;
-        } else if (companyLen > 26) {
-            companySize = 12;
-        } else if (companyLen > 18) {
-            companySize = 14;
-        } else {
-            companySize = 16;
-        }
-
-        Font labelNameFont = new Font(baseFont, nameSize, Font.BOLD);
-        Font labelCompanyFont = new Font(baseFont, companySize);
-
-        float contentHeight = document.getPageSize().getHeight() - document.topMargin() - document.bottomMargin();
-        float contentWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
-
-        float mmToPoints = 72f / 25.4f;
-        float shiftInPoints = LABEL_TOP_SHIFT_MM * mmToPoints;
-        
-        // Handle both positive (shift down) and negative (shift up) values
-        float topSpacerHeight = Math.max(0f, shiftInPoints);
-        float bodyHeight = contentHeight - topSpacerHeight;
-        
-        // For negative shifts, reduce body height from the top instead
-        if (shiftInPoints < 0) {
-            bodyHeight = contentHeight + shiftInPoints;
+        for (LayoutPlan.Region region : variant.getRegions()) {
+            PdfPCell cell;
+            switch (region.getContent()) {
+                case NAME:
+                    cell = new PdfPCell(new Phrase(nameSurname, region.fontFor(nameSurname.length())));
+                    break;
+                case COMPANY:
+                    cell = new PdfPCell(new Phrase(company, region.fontFor(company.length())));
+                    break;
+                default:
+                    qrImage.scaleToFit(variant.getQrTarget(), variant.getQrTarget());
+                    cell = new PdfPCell(qrImage, true);
+                    break;
+            }
+            cell.setBorder(Rectangle.NO_BORDER);
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+            region.applyTo(cell);
+            body.addCell(cell);
+        }
+
+        if (!plan.isWrapBody()) {
+            return body;
         }
 
         PdfPTable root = new PdfPTable(1);
         root.setWidthPercentage(100);
 
         // Only add top spacer if shift is positive (moving content down)
-        if (topSpacerHeight > 0) {
+        if (plan.getTopSpacerHeight() > 0) {
             PdfPCell topSpacer = new PdfPCell(new Phrase(""));
             topSpacer.setBorder(Rectangle.NO_BORDER);
-            topSpacer.setFixedHeight(topSpacerHeight);
+            topSpacer.setFixedHeight(plan.getTopSpacerHeight());
             topSpacer.setPadding(0f);
             root.addCell(topSpacer);
         }
 
-        // Body: single-column layout to match screenshot (name, company, QR)
-        PdfPTable body = new PdfPTable(1);
-        body.setWidthPercentage(100);
-
-        // For very long names, allocate more space and allow wrapping
-        boolean allowWrapping = nameLen > 30;
-        float nameHeight = allowWrapping ? bodyHeight * 0.42f : bodyHeight * 0.38f;
-        float companyHeight = allowWrapping ? bodyHeight * 0.23f : bodyHeight * 0.22f;
-        float qrHeight = allowWrapping ? bodyHeight * 0.35f : bodyHeight * 0.40f;
-
-        //System.out.println("[DEBUG PDF] Creating name cell with text: '" + nameSurname + "'");
-        //System.out.println("[DEBUG PDF] Name font size: " + nameSize);
-        
-        PdfPCell nameCell = new PdfPCell(new Phrase(nameSurname, labelNameFont));
-        nameCell.setBorder(Rectangle.NO_BORDER);
-        nameCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        nameCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        nameCell.setPadding(0f);
-        nameCell.setFixedHeight(nameHeight);
-        nameCell.setNoWrap(!allowWrapping);  // Allow wrapping for very long names
-
-        PdfPCell companyCell = new PdfPCell(new Phrase(company, labelCompanyFont));
-        companyCell.setBorder(Rectangle.NO_BORDER);
-        companyCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        companyCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        companyCell.setPadding(0f);
-        companyCell.setFixedHeight(companyHeight);
-        companyCell.setNoWrap(false);
-
-        float qrTarget = Math.min(contentWidth, qrHeight);
-        String qrPayload = generateVCard(attendee);
-        Image qrImage = generateQRCodeImage(qrPayload);
-        qrImage.scaleToFit(qrTarget, qrTarget);
-
-        PdfPCell qrCell = new PdfPCell(qrImage, true);
-        qrCell.setBorder(Rectangle.NO_BORDER);
-        qrCell.setHorizontalAlignment(Element.ALIGN_CENTER);
-        qrCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-        qrCell.setFixedHeight(qrHeight);
-        qrCell.setPadding(0f);
-
-        body.addCell(nameCell);
-        body.addCell(companyCell);
-        body.addCell(qrCell);
-
         PdfPCell bodyCell = new PdfPCell(body);
         bodyCell.setBorder(Rectangle.NO_BORDER);
         bodyCell.setPadding(0f);
-        bodyCell.setFixedHeight(bodyHeight);
+        bodyCell.setFixedHeight(plan.getBodyHeight());
         root.addCell(bodyCell);
-
-        document.add(root);
+        return root;
     }
 
     private String generateVCard(Attendee attendee) {
@@ -430,6 +955,11 @@ public class BadgeService {
         Map<EncodeHintType, Object> hints = new HashMap<>();
         hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
 
+        if (compactPdf) {
+            // Width/height 0 asks ZXing for one pixel per module; the PDF scales it without interpolation.
+            BitMatrix moduleMatrix = new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, hints);
+            return toOneBitImage(moduleMatrix);
+        }
         BitMatrix bitMatrix = new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, qrPixelSize, qrPixelSize, hints);
         BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
 
@@ -440,45 +970,36 @@ public class BadgeService {
         return Image.getInstance(imageBytes);
     }
 
-    public byte[] generateSingleBadge(Attendee attendee) throws Exception {
-        // Validate attendee data
-        if (attendee == null) {
-            throw new IllegalArgumentException("Attendee data is required");
-        }
-        if (attendee.getName() == null || attendee.getName().trim().isEmpty()) {
-            throw new IllegalArgumentException("Name is required");
-        }
-        String linkedinField = attendee.getLinkedin();
-        if (linkedinField == null || linkedinField.trim().isEmpty()) {
-            throw new IllegalArgumentException("LinkedIn (or Email) is required");
+    /**
+     * Packs the matrix into a raw 1-bit DeviceGray image (0 = black) that iText only has to
+     * flate-compress, skipping the BufferedImage/PNG round trip.
+     */
+    private static Image toOneBitImage(BitMatrix bitMatrix) throws BadElementException {
+        int width = bitMatrix.getWidth();
+        int height = bitMatrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+        byte[] bits = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                if (!bitMatrix.get(x, y)) {
+                    bits[row + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
         }
+        return Image.getInstance(width, height, 1, 1, bits);
+    }
 
-        // 80mm x 80mm page size setup
-        float mmToPoints = 72f / 25.4f;
-        float pageWidth = 80f * mmToPoints;
-        float pageHeight = 80f * mmToPoints;
-        Document document = new Document(new Rectangle(pageWidth, pageHeight));
-        document.setMargins(5f, 5f, 5f, 5f);
-
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, outputStream);
-        document.open();
-
-        addBadgeToDocument(document, attendee);
-        document.close();
-
-        byte[] pdfBytes = outputStream.toByteArray();
-        
-        // Clean up
-        document = null;
-        outputStream.close();
-        outputStream = null;
-        attendee = null;
-        
-        return pdfBytes;
+    public byte[] generateSingleBadge(Attendee attendee) throws Exception {
+        return generateSingle(attendee, LayoutPlans.BADGE_80X80);
     }
 
     public byte[] generateSingleLabel80x50(Attendee attendee) throws Exception {
+        return generateSingle(attendee, LayoutPlans.LABEL_80X50);
+    }
+
+    public byte[] generateSingle(Attendee attendee, String layoutName) throws Exception {
+        // Validate attendee data
         if (attendee == null) {
             throw new IllegalArgumentException("Attendee data is required");
         }
@@ -490,21 +1011,18 @@ public class BadgeService {
             throw new IllegalArgumentException("LinkedIn (or Email) is required");
         }
 
-        float mmToPoints = 72f / 25.4f;
-        float pageWidth = LABEL_WIDTH_MM * mmToPoints;
-        float pageHeight = LABEL_HEIGHT_MM * mmToPoints;
-        Document document = new Document(new Rectangle(pageWidth, pageHeight));
-        document.setMargins(LABEL_MARGIN_PT, LABEL_MARGIN_PT, LABEL_MARGIN_PT, LABEL_MARGIN_PT);
+        LayoutPlan plan = layoutPlans.get(layoutName);
+        Document document = newDocument(plan);
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, outputStream);
+        createWriter(document, outputStream);
         document.open();
 
-        addLabel80x50ToDocument(document, attendee);
+        document.add(buildPageTable(plan, attendee, generateQRCodeImage(generateVCard(attendee))));
         document.close();
 
         byte[] pdfBytes = outputStream.toByteArray();
         outputStream.close();
         return pdfBytes;
     }
-} 
\ No newline at end of file
+}
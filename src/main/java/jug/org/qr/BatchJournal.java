@@ -0,0 +1,205 @@
+package jug.org.qr;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Checkpoints of long batch renders on local disk, so a render cut short by a restart resumes
+ * where it stopped when the same upload is submitted again, instead of starting from row one.
+ *
+ * A job renders its pages in segments of {@code badgeqr.journal.segment-pages} attendees, each a
+ * PDF of its own under {@code <dir>/<job key>/}. Once a segment file is complete, the journal
+ * records it with the number of attendees done so far; that count is the checkpoint. The job key
+ * is the {@link RecentBatches} key, so only the same bytes with the same layout version resume.
+ * Off unless a segment size is configured.
+ */
+@Component
+public class BatchJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchJournal.class);
+
+    private static final Pattern JOB_KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final String JOURNAL = "journal.properties";
+
+    @Value("${badgeqr.journal.dir:}")
+    private String dir;
+
+    @Value("${badgeqr.journal.segment-pages:0}")
+    private int segmentPages;
+
+    @Value("${badgeqr.journal.ttl-hours:24}")
+    private long ttlHours;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        // A fixed path, not a fresh temp directory: it has to outlive the JVM.
+        root = Files.createDirectories(dir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "badgeqr-journal")
+                : Path.of(dir));
+    }
+
+    /** Segments of 0 pages turn journaling off. */
+    public boolean isEnabled() {
+        return segmentPages > 0;
+    }
+
+    /**
+     * Opens the job for {@code key}, picking up its checkpoint when an earlier run of the same
+     * batch left one. A journal that does not match (other segment size or layout version, or a
+     * segment file gone) is discarded and the job starts over.
+     */
+    public Job open(String key, String layoutName, String outputVersion) throws IOException {
+        if (!JOB_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid job key");
+        }
+        Job job = new Job(root.resolve(key), layoutName, outputVersion, segmentPages);
+        if (!job.resume()) {
+            job.delete();
+            Files.createDirectories(job.directory);
+        }
+        return job;
+    }
+
+    /** Deletes jobs whose journal has not moved within the TTL: nobody is coming back for them. */
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(ttlHours);
+        try (DirectoryStream<Path> jobs = Files.newDirectoryStream(root)) {
+            for (Path directory : jobs) {
+                if (Files.getLastModifiedTime(directory).toMillis() < cutoff) {
+                    deleteTree(directory);
+                    log.info("Dropped stale render journal {}", directory.getFileName());
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not sweep render journals: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** One batch's segments and checkpoint. Used by the single thread rendering the batch. */
+    public static final class Job {
+        private final Path directory;
+        private final String layoutName;
+        private final String outputVersion;
+        private final int segmentPages;
+        private int segments;
+        private int attendeesDone;
+
+        private Job(Path directory, String layoutName, String outputVersion, int segmentPages) {
+            this.directory = directory;
+            this.layoutName = layoutName;
+            this.outputVersion = outputVersion;
+            this.segmentPages = segmentPages;
+        }
+
+        /** Attendees per segment. */
+        public int segmentPages() {
+            return segmentPages;
+        }
+
+        /** Completed segments. */
+        public int segments() {
+            return segments;
+        }
+
+        /** Attendees rendered into the completed segments: where rendering continues. */
+        public int checkpoint() {
+            return attendeesDone;
+        }
+
+        public Path segment(int number) {
+            return directory.resolve(String.format("segment-%05d.pdf", number));
+        }
+
+        /** Where segment {@code number} is written until {@link #commitSegment} makes it count. */
+        public Path pendingSegment(int number) {
+            return directory.resolve(String.format("segment-%05d.pdf.tmp", number));
+        }
+
+        /** Records the pending segment as complete; the checkpoint moves past its {@code pages} attendees. */
+        public void commitSegment(int number, int pages) throws IOException {
+            if (number != segments) {
+                throw new IllegalStateException("Segment " + number + " committed out of order; expected " + segments);
+            }
+            Files.move(pendingSegment(number), segment(number), StandardCopyOption.ATOMIC_MOVE);
+            segments++;
+            attendeesDone += pages;
+
+            Properties journal = new Properties();
+            journal.setProperty("layout", layoutName);
+            journal.setProperty("outputVersion", outputVersion);
+            journal.setProperty("segmentPages", Integer.toString(segmentPages));
+            journal.setProperty("segments", Integer.toString(segments));
+            journal.setProperty("attendees", Integer.toString(attendeesDone));
+            Path pending = directory.resolve(JOURNAL + ".tmp");
+            try (OutputStream out = Files.newOutputStream(pending)) {
+                journal.store(out, "badgeqr render journal");
+            }
+            // A crash leaves either the old journal or the new one, never half of one.
+            Files.move(pending, directory.resolve(JOURNAL), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Removes the job's files, once its PDF has been delivered or when it cannot be resumed. */
+        public void delete() throws IOException {
+            deleteTree(directory);
+        }
+
+        private boolean resume() throws IOException {
+            Path file = directory.resolve(JOURNAL);
+            if (!Files.exists(file)) {
+                return false;
+            }
+            Properties journal = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                journal.load(in);
+            }
+            try {
+                if (!layoutName.equals(journal.getProperty("layout"))
+                        || !outputVersion.equals(journal.getProperty("outputVersion"))
+                        || segmentPages != Integer.parseInt(journal.getProperty("segmentPages", "0"))) {
+                    return false;
+                }
+                int recorded = Integer.parseInt(journal.getProperty("segments", "0"));
+                for (int i = 0; i < recorded; i++) {
+                    if (!Files.exists(segment(i))) {
+                        return false;
+                    }
+                }
+                segments = recorded;
+                attendeesDone = Integer.parseInt(journal.getProperty("attendees", "0"));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
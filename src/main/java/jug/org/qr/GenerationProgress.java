@@ -0,0 +1,225 @@
+package jug.org.qr;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of one batch generation, written by the rendering thread and read by the SSE sender.
+ *
+ * There is a single writer per instance, so plain volatile fields are enough: the render loop
+ * never takes a lock or allocates to report progress, and readers just see the latest values.
+ * The exception is the page counter, which sharded batches bump from one thread per shard.
+ *
+ * It is also how a batch is stopped early: render loops call {@link #checkCancelled()} between
+ * pages, which throws once the deadline has passed or nobody has watched the progress stream
+ * for {@link #CLIENT_GONE_GRACE_SECONDS} (the tab was closed; a brief reconnect is not enough).
+ * Requests that joined the render count as watching it until they return or their own stream
+ * is gone for as long.
+ */
+public class GenerationProgress {
+
+    public enum Phase { QUEUED, PARSING, RENDERING, FINISHING, DONE, FAILED }
+
+    static final long CLIENT_GONE_GRACE_SECONDS = 10;
+
+    private final long createdAtMillis = System.currentTimeMillis();
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile int rowsParsed;
+    private volatile boolean parsingFinished;
+    private volatile int pagesPerRow = 1;
+    private volatile int totalPages;
+    private final AtomicInteger pagesRendered = new AtomicInteger();
+    private volatile int pagesResumed;
+    private volatile long renderStartNanos;
+    private volatile long renderEndNanos;
+    private volatile String message;
+    private volatile long finishedAtMillis;
+    private volatile GenerationProgress followed;
+    private volatile boolean unfollowed;
+
+    private final AtomicInteger watchers = new AtomicInteger();
+    private final Set<GenerationProgress> followers = ConcurrentHashMap.newKeySet();
+    private volatile long unwatchedSinceNanos;
+    private volatile long deadlineNanos;
+    private volatile RenderCancelledException cancelled;
+
+    void parsingStarted() {
+        phase = Phase.PARSING;
+    }
+
+    void rowParsed() {
+        rowsParsed++;
+    }
+
+    /** Batches rendering several documents from each row, e.g. badges and labels. Set before parsing ends. */
+    void pagesPerRow(int pages) {
+        pagesPerRow = pages;
+    }
+
+    /** Rows are parsed while pages render, so the page total is only known from here on. */
+    void parsingFinished() {
+        totalPages = rowsParsed * pagesPerRow;
+        parsingFinished = true;
+    }
+
+    void renderingStarted() {
+        renderStartNanos = System.nanoTime();
+        phase = Phase.RENDERING;
+    }
+
+    void pageRendered() {
+        pagesRendered.incrementAndGet();
+    }
+
+    /** Pages an earlier, interrupted run rendered already; they count as done but not towards the rate. */
+    void pagesResumed(int pages) {
+        pagesResumed = pages;
+        pagesRendered.addAndGet(pages);
+    }
+
+    void finishing() {
+        renderEndNanos = System.nanoTime();
+        phase = Phase.FINISHING;
+    }
+
+    void done() {
+        finishedAtMillis = System.currentTimeMillis();
+        phase = Phase.DONE;
+    }
+
+    void failed(String reason) {
+        message = reason;
+        finishedAtMillis = System.currentTimeMillis();
+        phase = Phase.FAILED;
+    }
+
+    /**
+     * Reports {@code leader}'s progress until this one finishes: the request joined its render.
+     * A request resubmitted under the id of the render it joins is already reporting it, so
+     * following would only make {@link #snapshot()} chase itself.
+     */
+    void follow(GenerationProgress leader) {
+        for (GenerationProgress p = leader; p != null; p = p.followed) {
+            if (p == this) {
+                return;
+            }
+        }
+        unfollow();
+        followed = leader;
+        unfollowed = false;
+        // Others now wait for the render, so the leader's tab closing alone must not stop it.
+        leader.followers.add(this);
+    }
+
+    /** The joining request has returned or failed; its snapshot keeps showing the leader until done. */
+    void unfollow() {
+        GenerationProgress leader = followed;
+        if (leader != null && !unfollowed) {
+            unfollowed = true;
+            leader.followers.remove(this);
+        }
+    }
+
+    /** The batch must be done within {@code millis} from now; 0 means no deadline. */
+    void deadline(long millis) {
+        deadlineNanos = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+    }
+
+    /** A progress stream opened for this batch. */
+    void watched() {
+        watchers.incrementAndGet();
+        unwatchedSinceNanos = 0;
+    }
+
+    /** A progress stream closed before the batch finished. */
+    void unwatched() {
+        if (watchers.decrementAndGet() == 0 && !isFinished()) {
+            unwatchedSinceNanos = System.nanoTime() | 1;
+        }
+    }
+
+    /**
+     * Throws {@link RenderCancelledException} if the batch should stop: called by render loops
+     * between pages. Costs two volatile reads while there is nothing to check.
+     */
+    void checkCancelled() {
+        RenderCancelledException stop = cancelled;
+        if (stop == null) {
+            long unwatchedSince = unwatchedSinceNanos;
+            long deadline = deadlineNanos;
+            if (unwatchedSince == 0 && deadline == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (deadline != 0 && now - deadline > 0) {
+                stop = new RenderCancelledException(RenderCancelledException.Reason.DEADLINE, pagesRendered.get());
+            } else if (isAbandoned(now) && followers.stream().allMatch(follower -> follower.isAbandoned(now))) {
+                stop = new RenderCancelledException(RenderCancelledException.Reason.CLIENT_GONE, pagesRendered.get());
+            } else {
+                return;
+            }
+            // Concurrent loops of one batch (shards, badges+labels) all stop with the same reason.
+            cancelled = stop;
+        }
+        throw stop;
+    }
+
+    /** Its progress stream has been closed for longer than the grace period, and none reopened. */
+    private boolean isAbandoned(long now) {
+        long unwatchedSince = unwatchedSinceNanos;
+        return unwatchedSince != 0 && watchers.get() == 0
+                && now - unwatchedSince > TimeUnit.SECONDS.toNanos(CLIENT_GONE_GRACE_SECONDS);
+    }
+
+    public boolean isFinished() {
+        Phase current = phase;
+        return current == Phase.DONE || current == Phase.FAILED;
+    }
+
+    /**
+     * Finished before {@code cutoffMillis}, or created before it and never used: no batch and no
+     * open stream. A batch still rendering is never stale, however long it takes.
+     */
+    boolean isStale(long cutoffMillis) {
+        long finishedAt = finishedAtMillis;
+        if (finishedAt != 0) {
+            return finishedAt < cutoffMillis;
+        }
+        return phase == Phase.QUEUED && followed == null && watchers.get() == 0 && createdAtMillis < cutoffMillis;
+    }
+
+    public Snapshot snapshot() {
+        // Read phase first: a later phase implies the counters written before it are visible.
+        Phase current = phase;
+        GenerationProgress leader = followed;
+        if (leader != null && current != Phase.DONE && current != Phase.FAILED) {
+            return leader.snapshot();
+        }
+        int pages = pagesRendered.get();
+        boolean totalKnown = parsingFinished;
+        int total = totalKnown ? totalPages : rowsParsed * pagesPerRow;
+        long start = renderStartNanos;
+        long end = renderEndNanos != 0 ? renderEndNanos : System.nanoTime();
+
+        double pagesPerSecond = 0;
+        long etaSeconds = -1;
+        int renderedHere = pages - pagesResumed;
+        if (start != 0 && renderedHere > 0) {
+            double elapsedSeconds = Math.max(1, end - start) / (double) TimeUnit.SECONDS.toNanos(1);
+            pagesPerSecond = renderedHere / elapsedSeconds;
+            if (totalKnown) {
+                etaSeconds = Math.round((total - pages) / pagesPerSecond);
+            }
+        }
+        return new Snapshot(current, rowsParsed, totalKnown, total, pages, Math.round(pagesPerSecond * 10) / 10.0,
+                etaSeconds, message);
+    }
+
+    /** {@code totalPages} is the rows parsed so far until {@code totalKnown}. */
+    public record Snapshot(Phase phase, int rowsParsed, boolean totalKnown, int totalPages, int pagesRendered,
+                           double pagesPerSecond, long etaSeconds, String message) {
+    }
+}
@@ -0,0 +1,54 @@
+package jug.org.qr;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-JVM result store. Only works behind a single instance (or sticky sessions).
+ * Entries stay on the heap for the time-to-live from when they were stored, so a repeated
+ * upload (see {@link RecentBatches}) can be served the same PDF.
+ */
+public class InMemoryResultStore implements ResultStore {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public InMemoryResultStore(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public String put(byte[] pdfBytes) {
+        String fileId = UUID.randomUUID().toString();
+        entries.put(fileId, new Entry(pdfBytes, System.currentTimeMillis()));
+        return fileId;
+    }
+
+    @Override
+    public String write(ResultWriter writer) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return put(out.toByteArray());
+    }
+
+    @Override
+    public StoredResult open(String fileId) {
+        Entry entry = entries.get(fileId);
+        return entry == null ? null : StoredResult.of(entry.pdfBytes);
+    }
+
+    @Override
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().createdAt < cutoff) {
+                entries.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private record Entry(byte[] pdfBytes, long createdAt) {
+    }
+}
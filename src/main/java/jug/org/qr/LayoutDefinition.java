@@ -0,0 +1,31 @@
+package jug.org.qr;
+
+import java.util.List;
+
+/**
+ * JSON shape of one entry in {@code badge-layouts.json}. Only parsed at startup;
+ * rendering uses the compiled {@link LayoutPlan}.
+ *
+ * Lengths are strings with a unit ({@code "80mm"}, {@code "5pt"}); region heights are
+ * fractions of the body height; paddings are in points and default to iText's 2pt.
+ */
+public record LayoutDefinition(Page page, String topShift, boolean wrapBody, List<Variant> variants) {
+
+    public record Page(String width, String height, String margin) {
+    }
+
+    /** Regions to use when the name is longer than {@code nameLongerThan} (null = always). */
+    public record Variant(Integer nameLongerThan, List<Region> regions) {
+    }
+
+    public record Region(String content, float height, Float padding, Float paddingTop, Float paddingBottom,
+                         boolean noWrap, FontRule font) {
+    }
+
+    /** First size whose {@code longerThan} is exceeded wins; the last entry should omit it. */
+    public record FontRule(boolean bold, List<FontSize> sizes) {
+    }
+
+    public record FontSize(Integer longerThan, float size) {
+    }
+}
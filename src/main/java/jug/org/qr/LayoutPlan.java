@@ -0,0 +1,206 @@
+package jug.org.qr;
+
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfPCell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link LayoutDefinition} compiled against the loaded font: page size, margins, absolute
+ * region heights, QR target size and the {@link Font} for every size rule are all resolved once,
+ * so rendering a page only picks a variant and a font by text length.
+ *
+ * Immutable and safe to share between threads.
+ */
+public final class LayoutPlan {
+
+    public enum Content { NAME, COMPANY, QR }
+
+    private final String name;
+    private final Rectangle pageSize;
+    private final float margin;
+    private final float contentWidth;
+    private final float topSpacerHeight;
+    private final float bodyHeight;
+    private final boolean wrapBody;
+    private final List<Variant> variants;
+
+    private LayoutPlan(String name, Rectangle pageSize, float margin, float contentWidth, float topSpacerHeight,
+                       float bodyHeight, boolean wrapBody, List<Variant> variants) {
+        this.name = name;
+        this.pageSize = pageSize;
+        this.margin = margin;
+        this.contentWidth = contentWidth;
+        this.topSpacerHeight = topSpacerHeight;
+        this.bodyHeight = bodyHeight;
+        this.wrapBody = wrapBody;
+        this.variants = variants;
+    }
+
+    public static LayoutPlan compile(String name, LayoutDefinition definition, BaseFont baseFont) {
+        if (definition.page() == null || definition.variants() == null || definition.variants().isEmpty()) {
+            throw new IllegalArgumentException("Layout " + name + " needs a page and at least one variant");
+        }
+        float pageWidth = toPoints(definition.page().width());
+        float pageHeight = toPoints(definition.page().height());
+        float margin = toPoints(definition.page().margin());
+        // Same arithmetic as Document's page size minus margins, so the fixed heights fit exactly.
+        float contentWidth = pageWidth - margin - margin;
+        float contentHeight = pageHeight - margin - margin;
+
+        // Positive shift adds a spacer above the body; negative shift takes it off the body.
+        float shift = definition.topShift() == null ? 0f : toPoints(definition.topShift());
+        float topSpacerHeight = Math.max(0f, shift);
+        float bodyHeight = shift < 0 ? contentHeight + shift : contentHeight - topSpacerHeight;
+
+        List<Variant> variants = new ArrayList<>();
+        for (LayoutDefinition.Variant variant : definition.variants()) {
+            variants.add(Variant.compile(name, variant, bodyHeight, contentWidth, baseFont));
+        }
+        Variant last = variants.get(variants.size() - 1);
+        if (last.nameLongerThan != null) {
+            throw new IllegalArgumentException("Layout " + name + ": the last variant must not have nameLongerThan");
+        }
+        return new LayoutPlan(name, new Rectangle(pageWidth, pageHeight), margin, contentWidth, topSpacerHeight,
+                bodyHeight, definition.wrapBody(), List.copyOf(variants));
+    }
+
+    public String getName() { return name; }
+    public Rectangle getPageSize() { return pageSize; }
+    public float getMargin() { return margin; }
+    public float getContentWidth() { return contentWidth; }
+    public float getTopSpacerHeight() { return topSpacerHeight; }
+    public float getBodyHeight() { return bodyHeight; }
+    public boolean isWrapBody() { return wrapBody; }
+
+    public Variant variantFor(int nameLength) {
+        for (Variant variant : variants) {
+            if (variant.nameLongerThan == null || nameLength > variant.nameLongerThan) {
+                return variant;
+            }
+        }
+        throw new IllegalStateException("unreachable: last variant is unconditional");
+    }
+
+    static float toPoints(String length) {
+        if (length == null) {
+            throw new IllegalArgumentException("Missing length");
+        }
+        String value = length.trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("mm")) {
+            return Float.parseFloat(value.substring(0, value.length() - 2).trim()) * 72f / 25.4f;
+        }
+        if (value.endsWith("pt")) {
+            return Float.parseFloat(value.substring(0, value.length() - 2).trim());
+        }
+        throw new IllegalArgumentException("Length needs an mm or pt unit: " + length);
+    }
+
+    public static final class Variant {
+        private final Integer nameLongerThan;
+        private final List<Region> regions;
+        private final float qrTarget;
+
+        private Variant(Integer nameLongerThan, List<Region> regions, float qrTarget) {
+            this.nameLongerThan = nameLongerThan;
+            this.regions = regions;
+            this.qrTarget = qrTarget;
+        }
+
+        private static Variant compile(String layout, LayoutDefinition.Variant definition, float bodyHeight,
+                                       float contentWidth, BaseFont baseFont) {
+            List<Region> regions = new ArrayList<>();
+            float qrTarget = 0f;
+            for (LayoutDefinition.Region region : definition.regions()) {
+                Region compiled = Region.compile(layout, region, bodyHeight, baseFont);
+                if (compiled.content == Content.QR) {
+                    qrTarget = Math.min(contentWidth, compiled.height);
+                }
+                regions.add(compiled);
+            }
+            return new Variant(definition.nameLongerThan(), List.copyOf(regions), qrTarget);
+        }
+
+        public List<Region> getRegions() { return regions; }
+
+        /** Side of the square the QR image is scaled to fit. */
+        public float getQrTarget() { return qrTarget; }
+    }
+
+    public static final class Region {
+        private final Content content;
+        private final float height;
+        private final Float padding;
+        private final Float paddingTop;
+        private final Float paddingBottom;
+        private final boolean noWrap;
+        private final int[] longerThan;
+        private final Font[] fonts;
+
+        private Region(Content content, float height, Float padding, Float paddingTop, Float paddingBottom,
+                       boolean noWrap, int[] longerThan, Font[] fonts) {
+            this.content = content;
+            this.height = height;
+            this.padding = padding;
+            this.paddingTop = paddingTop;
+            this.paddingBottom = paddingBottom;
+            this.noWrap = noWrap;
+            this.longerThan = longerThan;
+            this.fonts = fonts;
+        }
+
+        private static Region compile(String layout, LayoutDefinition.Region definition, float bodyHeight,
+                                      BaseFont baseFont) {
+            Content content = Content.valueOf(definition.content().toUpperCase(Locale.ROOT));
+            int[] longerThan = new int[0];
+            Font[] fonts = new Font[0];
+            if (content != Content.QR) {
+                LayoutDefinition.FontRule rule = definition.font();
+                if (rule == null || rule.sizes() == null || rule.sizes().isEmpty()) {
+                    throw new IllegalArgumentException("Layout " + layout + ": " + definition.content() + " needs font sizes");
+                }
+                int count = rule.sizes().size();
+                longerThan = new int[count];
+                fonts = new Font[count];
+                for (int i = 0; i < count; i++) {
+                    LayoutDefinition.FontSize size = rule.sizes().get(i);
+                    longerThan[i] = size.longerThan() == null ? -1 : size.longerThan();
+                    fonts[i] = rule.bold() ? new Font(baseFont, size.size(), Font.BOLD) : new Font(baseFont, size.size());
+                }
+            }
+            return new Region(content, bodyHeight * definition.height(), definition.padding(),
+                    definition.paddingTop(), definition.paddingBottom(), definition.noWrap(), longerThan, fonts);
+        }
+
+        public Content getContent() { return content; }
+        public float getHeight() { return height; }
+
+        public Font fontFor(int textLength) {
+            for (int i = 0; i < longerThan.length; i++) {
+                if (textLength > longerThan[i]) {
+                    return fonts[i];
+                }
+            }
+            return fonts[fonts.length - 1];
+        }
+
+        /** Applies the static cell properties; content and alignment are set by the renderer. */
+        public void applyTo(PdfPCell cell) {
+            if (padding != null) {
+                cell.setPadding(padding);
+            }
+            if (paddingTop != null) {
+                cell.setPaddingTop(paddingTop);
+            }
+            if (paddingBottom != null) {
+                cell.setPaddingBottom(paddingBottom);
+            }
+            cell.setFixedHeight(height);
+            cell.setNoWrap(noWrap);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jug.org.qr;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itextpdf.text.pdf.BaseFont;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The compiled layouts from {@code badge-layouts.json}, keyed by name.
+ */
+public final class LayoutPlans {
+
+    public static final String RESOURCE = "badge-layouts.json";
+    public static final String BADGE_80X80 = "badge-80x80";
+    public static final String LABEL_80X50 = "label-80x50";
+
+    private final Map<String, LayoutPlan> plans;
+    private final Map<String, String> versions;
+
+    private LayoutPlans(Map<String, LayoutPlan> plans, Map<String, String> versions) {
+        this.plans = plans;
+        this.versions = versions;
+    }
+
+    public static LayoutPlans load(BaseFont baseFont) throws IOException {
+        try (InputStream in = LayoutPlans.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IOException(RESOURCE + " not found on the classpath");
+            }
+            Map<String, LayoutDefinition> definitions =
+                    new ObjectMapper().readValue(in, new TypeReference<LinkedHashMap<String, LayoutDefinition>>() { });
+            ObjectMapper mapper = new ObjectMapper();
+            Map<String, LayoutPlan> plans = new LinkedHashMap<>();
+            Map<String, String> versions = new LinkedHashMap<>();
+            for (Map.Entry<String, LayoutDefinition> e : definitions.entrySet()) {
+                plans.put(e.getKey(), LayoutPlan.compile(e.getKey(), e.getValue(), baseFont));
+                versions.put(e.getKey(), fingerprint(mapper.writeValueAsBytes(e.getValue())));
+            }
+            return new LayoutPlans(Map.copyOf(plans), Map.copyOf(versions));
+        }
+    }
+
+    public LayoutPlan get(String name) {
+        LayoutPlan plan = plans.get(name);
+        if (plan == null) {
+            throw new IllegalArgumentException("Unknown layout: " + name + " (available: " + plans.keySet() + ")");
+        }
+        return plan;
+    }
+
+    /** Changes whenever the layout's definition does (whitespace and key order aside). */
+    public String version(String name) {
+        return versions.get(get(name).getName());
+    }
+
+    private static String fingerprint(byte[] definition) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(definition);
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
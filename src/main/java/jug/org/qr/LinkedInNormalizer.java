@@ -1,16 +1,29 @@
 package jug.org.qr;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Normalizes the LinkedIn/email column into a QR payload.
+ *
+ * The recognizers below are hand-written single-pass scanners. They accept exactly
+ * what the original patterns accepted:
+ * - URL:    {@code (?i)(?:https?://)?(?:[a-z0-9-]+\.)?linkedin\.com/(?:mwlite/)?in/([^/?#]+)} (find)
+ * - suffix: {@code (?i)^(?:/)?in/([^/?#]+)(?:/)?$} (find)
+ * - handle: {@code ^[A-Za-z0-9][A-Za-z0-9-]{2,99}$}
+ * - email:  {@code ^[^\s@]+@[^\s@]+\.[^\s@]+$}
+ * Case-insensitive matching is ASCII-only, like {@code (?i)} without UNICODE_CASE.
+ */
 public final class LinkedInNormalizer {
 
-    private static final Pattern LINKEDIN_IN_URL = Pattern.compile(
-            "(?i)(?:https?://)?(?:[a-z0-9-]+\\.)?linkedin\\.com/(?:mwlite/)?in/([^/?#]+)"
-    );
-        private static final Pattern LINKEDIN_IN_SUFFIX = Pattern.compile("(?i)^(?:/)?in/([^/?#]+)(?:/)?$");
-    private static final Pattern LINKEDIN_HANDLE = Pattern.compile("^[A-Za-z0-9][A-Za-z0-9-]{2,99}$");
-    private static final Pattern EMAIL_LIKE = Pattern.compile("^[^\\s@]+@[^\\s@]+\\.[^\\s@]+$");
+    private static final String LINKEDIN_HOST = "linkedin.com/";
+    private static final String MWLITE_SEGMENT = "mwlite/";
+    private static final String IN_SEGMENT = "in/";
+
+    // Rosters repeat the same inputs (vCard + QR per page, badge and label runs),
+    // so keep a small memo of recent results. Cleared wholesale when full.
+    private static final int MEMO_MAX_ENTRIES = 4096;
+    private static final ConcurrentHashMap<String, String> payloadMemo = new ConcurrentHashMap<>();
 
     private LinkedInNormalizer() {
     }
@@ -31,18 +44,18 @@ public final class LinkedInNormalizer {
         input = stripQueryAndFragment(input);
 
         // If it's a full URL (or URL-ish) containing linkedin.com/in/<handle>
-        Matcher urlMatcher = LINKEDIN_IN_URL.matcher(input);
-        if (urlMatcher.find()) {
-            String handle = cleanHandle(urlMatcher.group(1));
+        String urlHandle = findProfileUrlHandle(input);
+        if (urlHandle != null) {
+            String handle = cleanHandle(urlHandle);
             if (!handle.isEmpty()) {
                 return canonicalProfileUrl(handle);
             }
         }
 
         // If user enters just the suffix like in/altuga
-        Matcher suffixMatcher = LINKEDIN_IN_SUFFIX.matcher(input);
-        if (suffixMatcher.find()) {
-            String handle = cleanHandle(suffixMatcher.group(1));
+        String suffixHandle = matchInSuffixHandle(input);
+        if (suffixHandle != null) {
+            String handle = cleanHandle(suffixHandle);
             if (!handle.isEmpty()) {
                 return canonicalProfileUrl(handle);
             }
@@ -50,13 +63,25 @@ public final class LinkedInNormalizer {
 
         // If user enters just the handle
         String candidate = cleanHandle(input);
-        if (LINKEDIN_HANDLE.matcher(candidate).matches()) {
+        if (isLinkedInHandle(candidate)) {
             return canonicalProfileUrl(candidate);
         }
 
         return "";
     }
 
+    /**
+     * Returns just the profile handle, lower-cased ({@code In/Altuga/} gives {@code altuga}),
+     * or "" when the input is not a LinkedIn handle, suffix or URL.
+     */
+    public static String extractHandle(String raw) {
+        String url = normalizeLinkedInProfileUrl(raw);
+        if (url.isEmpty()) {
+            return "";
+        }
+        return url.substring(canonicalProfileUrl("").length() - 1, url.length() - 1).toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Normalizes user input into the string to embed in QR:
      * - LinkedIn handle/URL/suffix => canonical LinkedIn profile URL
@@ -64,6 +89,22 @@ public final class LinkedInNormalizer {
      * - Any other non-empty string => returned as-is (trimmed)
      */
     public static String normalizeToQrPayload(String raw) {
+        if (raw == null) {
+            return "";
+        }
+        String cached = payloadMemo.get(raw);
+        if (cached != null) {
+            return cached;
+        }
+        String payload = computeQrPayload(raw);
+        if (payloadMemo.size() >= MEMO_MAX_ENTRIES) {
+            payloadMemo.clear();
+        }
+        payloadMemo.put(raw, payload);
+        return payload;
+    }
+
+    private static String computeQrPayload(String raw) {
         String input = safeTrim(raw);
         if (input.isEmpty()) {
             return "";
@@ -75,7 +116,7 @@ public final class LinkedInNormalizer {
         }
 
         // Fallback: keep old behavior usable if someone pastes an email.
-        if (EMAIL_LIKE.matcher(input).matches()) {
+        if (isEmailLike(input)) {
             return "mailto:" + input;
         }
 
@@ -89,9 +130,119 @@ public final class LinkedInNormalizer {
         return "";
     }
 
+    /**
+     * Returns the handle following the first {@code linkedin.com/[mwlite/]in/}, or null.
+     * Input has already had its query/fragment stripped, so the handle runs to the next '/'.
+     */
+    private static String findProfileUrlHandle(String input) {
+        int from = 0;
+        int limit = input.length() - LINKEDIN_HOST.length();
+        while (from <= limit) {
+            int at = indexOfIgnoreAsciiCase(input, LINKEDIN_HOST, from);
+            if (at < 0) {
+                return null;
+            }
+            int pos = at + LINKEDIN_HOST.length();
+            int handleStart = -1;
+            if (regionMatchesAsciiIgnoreCase(input, pos, MWLITE_SEGMENT + IN_SEGMENT)) {
+                handleStart = pos + MWLITE_SEGMENT.length() + IN_SEGMENT.length();
+                if (handleEnd(input, handleStart) == handleStart) {
+                    handleStart = -1;
+                }
+            }
+            if (handleStart < 0 && regionMatchesAsciiIgnoreCase(input, pos, IN_SEGMENT)) {
+                handleStart = pos + IN_SEGMENT.length();
+            }
+            if (handleStart >= 0) {
+                int end = handleEnd(input, handleStart);
+                if (end > handleStart) {
+                    return input.substring(handleStart, end);
+                }
+            }
+            from = at + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Matches the whole input against {@code [/]in/<handle>[/]}, honouring that
+     * {@code $} also matches before a single trailing line terminator.
+     */
+    private static String matchInSuffixHandle(String input) {
+        int pos = input.startsWith("/") ? 1 : 0;
+        if (!regionMatchesAsciiIgnoreCase(input, pos, IN_SEGMENT)) {
+            return null;
+        }
+        int start = pos + IN_SEGMENT.length();
+        int end = handleEnd(input, start);
+        if (end == start) {
+            return null;
+        }
+        int length = input.length();
+        if (end == length) {
+            return input.substring(start, end);
+        }
+        // end points at a '/': allow exactly one, optionally followed by a final line terminator.
+        int rest = length - (end + 1);
+        if (rest == 0 || (rest == 1 && isLineTerminator(input.charAt(length - 1)))) {
+            return input.substring(start, end);
+        }
+        return null;
+    }
+
+    private static int handleEnd(String input, int start) {
+        int i = start;
+        int length = input.length();
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isLinkedInHandle(String candidate) {
+        int length = candidate.length();
+        if (length < 3 || length > 100 || !isAsciiAlphanumeric(candidate.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            char c = candidate.charAt(i);
+            if (c != '-' && !isAsciiAlphanumeric(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmailLike(String input) {
+        int at = -1;
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (isRegexWhitespace(c)) {
+                return false;
+            }
+            if (c == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            }
+        }
+        if (at <= 0) {
+            return false;
+        }
+        // Domain needs a '.' with at least one character on each side.
+        int dot = input.indexOf('.', at + 2);
+        return dot >= 0 && dot < length - 1;
+    }
+
     private static boolean startsWithHttpScheme(String value) {
-        String lower = value.toLowerCase();
-        return lower.startsWith("http://") || lower.startsWith("https://");
+        return regionMatchesAsciiIgnoreCase(value, 0, "http://")
+                || regionMatchesAsciiIgnoreCase(value, 0, "https://");
     }
 
     private static String canonicalProfileUrl(String handle) {
@@ -106,29 +257,22 @@ public final class LinkedInNormalizer {
         }
         // LinkedIn handles are case-insensitive in practice, but keep user's casing.
         // Remove any accidental trailing slashes.
-        while (h.endsWith("/")) {
-            h = h.substring(0, h.length() - 1);
+        int end = h.length();
+        while (end > 0 && h.charAt(end - 1) == '/') {
+            end--;
         }
-        return h;
+        return end == h.length() ? h : h.substring(0, end);
     }
 
     private static String stripQueryAndFragment(String input) {
-        int q = input.indexOf('?');
-        int hash = input.indexOf('#');
-        int cut;
-        if (q == -1 && hash == -1) {
-            cut = -1;
-        } else if (q == -1) {
-            cut = hash;
-        } else if (hash == -1) {
-            cut = q;
-        } else {
-            cut = Math.min(q, hash);
-        }
-        if (cut == -1) {
-            return input;
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == '?' || c == '#') {
+                return input.substring(0, i);
+            }
         }
-        return input.substring(0, cut);
+        return input;
     }
 
     private static String safeTrim(String s) {
@@ -141,7 +285,80 @@ public final class LinkedInNormalizer {
             trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
         }
         // Normalize whitespace runs
-        trimmed = trimmed.replaceAll("\\s+", " ");
-        return trimmed;
+        return collapseWhitespace(trimmed);
+    }
+
+    /** Equivalent of {@code replaceAll("\\s+", " ")}; returns the input itself when nothing changes. */
+    private static String collapseWhitespace(String s) {
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (isRegexWhitespace(c)
+                    && (c != ' ' || (i + 1 < length && isRegexWhitespace(s.charAt(i + 1))))) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(s, 0, i);
+        boolean inRun = false;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (isRegexWhitespace(c)) {
+                if (!inRun) {
+                    sb.append(' ');
+                    inRun = true;
+                }
+            } else {
+                sb.append(c);
+                inRun = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int indexOfIgnoreAsciiCase(String s, String lowerNeedle, int from) {
+        int last = s.length() - lowerNeedle.length();
+        char first = lowerNeedle.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (toAsciiLower(s.charAt(i)) == first && regionMatchesAsciiIgnoreCase(s, i, lowerNeedle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatchesAsciiIgnoreCase(String s, int offset, String lowerNeedle) {
+        int n = lowerNeedle.length();
+        if (offset < 0 || offset + n > s.length()) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (toAsciiLower(s.charAt(offset + i)) != lowerNeedle.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toAsciiLower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAsciiAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    /** Matches {@code \s} without UNICODE_CHARACTER_CLASS: [ \t\n\x0B\f\r]. */
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 }
@@ -0,0 +1,480 @@
+package jug.org.qr;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for finding each endpoint's capacity before the event does.
+ *
+ * Virtual users loop over weighted scenarios (a CSV batch via {@code /generate},
+ * {@code /generate-labels} or {@code /generate-both}, or a single {@code /quick-generate-label}), each followed by its
+ * {@code /download}. Concurrency is stepped, e.g. {@code --concurrency 1,2,4,8}: capacity is
+ * where throughput stops growing while p95/p99 latency climbs.
+ *
+ * Every batch upload carries the same rows under a header line of its own, so the app's
+ * content-hash dedup ({@link RecentBatches}) does not answer it with a stored PDF and the batch
+ * numbers measure rendering. {@code --repeat-uploads} sends identical bytes instead, to measure
+ * the dedup path.
+ *
+ * By default the app is started inside this JVM on a random port, so its heap and GC can be
+ * reported; size the heap like production ({@code -Xmx}). With {@code --url} a running instance
+ * is targeted and only client-side numbers are reported.
+ *
+ * From the boot jar:
+ * {@code java -Xmx750m -cp target/badgeqr-1.0-S.jar -Dloader.main=jug.org.qr.LoadTest
+ * org.springframework.boot.loader.launch.PropertiesLauncher --concurrency 1,4,8 --duration 60}
+ */
+public class LoadTest {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: LoadTest [options]",
+            "  --url <base>              target a running instance (default: start the app in this JVM)",
+            "  --concurrency <n,n,...>   virtual users per step (default: 1,2,4,8)",
+            "  --duration <s>            seconds per step (default: 30)",
+            "  --warmup <s>              unmeasured warm-up at the first step's concurrency (default: 10)",
+            "  --mix <k=w,...>           scenario weights: badges, labels, both, quick (default: badges=1,labels=2,quick=7)",
+            "  --rows <n>                attendees per uploaded roster (default: 200)",
+            "  --seed <n>                roster generator seed (default: 42)",
+            "  --repeat-uploads          send the same roster bytes every time, so batches hit dedup");
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 200;
+
+    enum Endpoint {
+        GENERATE("/generate"), GENERATE_LABELS("/generate-labels"), GENERATE_BOTH("/generate-both"),
+        QUICK_LABEL("/quick-generate-label"), DOWNLOAD("/download");
+
+        final String path;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+    }
+
+    enum Scenario { BADGES, LABELS, BOTH, QUICK }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int[] steps = {1, 2, 4, 8};
+        int durationSeconds = 30;
+        int warmupSeconds = 10;
+        Map<Scenario, Integer> mix = parseMix("badges=1,labels=2,quick=7");
+        int rows = 200;
+        long seed = 42;
+        boolean repeatUploads = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> url = requireValue(args, ++i);
+                case "--concurrency" -> steps = Arrays.stream(requireValue(args, ++i).split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                case "--duration" -> durationSeconds = Integer.parseInt(requireValue(args, ++i));
+                case "--warmup" -> warmupSeconds = Integer.parseInt(requireValue(args, ++i));
+                case "--mix" -> mix = parseMix(requireValue(args, ++i));
+                case "--rows" -> rows = Integer.parseInt(requireValue(args, ++i));
+                case "--seed" -> seed = Long.parseLong(requireValue(args, ++i));
+                case "--repeat-uploads" -> repeatUploads = true;
+                default -> exitWithUsage("Unknown option: " + args[i]);
+            }
+        }
+
+        PrintStream report = System.out;
+        ConfigurableApplicationContext app = null;
+        if (url == null) {
+            // The app logs batches to System.out; keep the report readable.
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            app = SpringApplication.run(BadgeQRApplication.class, "--server.port=0", "--logging.level.root=WARN");
+            url = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            SyntheticRoster roster = new SyntheticRoster(seed);
+            LoadTest test = new LoadTest(url, roster.csv(rows), roster, mix, repeatUploads, app != null);
+            report.printf(Locale.ROOT, "Target %s, %d rows per roster, mix %s, %s uploads%n", url, rows, mix,
+                    repeatUploads ? "repeated" : "unique");
+            if (warmupSeconds > 0) {
+                report.printf(Locale.ROOT, "Warming up for %d s at concurrency %d...%n", warmupSeconds, steps[0]);
+                test.runStep(steps[0], warmupSeconds);
+            }
+            for (int s = 0; s < steps.length; s++) {
+                StepResult result = test.runStep(steps[s], durationSeconds);
+                report.printf(Locale.ROOT, "%nStep %d/%d: concurrency %d, %d s%n", s + 1, steps.length, steps[s], durationSeconds);
+                result.print(report);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            System.setOut(report);
+        }
+    }
+
+    private final String baseUrl;
+    private final byte[] rosterCsv;
+    private final int rosterHeaderLength;
+    private final boolean repeatUploads;
+    // Also sets this run's uploads apart from an earlier run's against the same instance.
+    private final String runId = Long.toHexString(System.nanoTime());
+    private final AtomicLong uploads = new AtomicLong();
+    private final SyntheticRoster roster;
+    private final Scenario[] weightedScenarios;
+    private final boolean sampleJvm;
+    private final HttpClient client;
+
+    LoadTest(String baseUrl, byte[] rosterCsv, SyntheticRoster roster, Map<Scenario, Integer> mix,
+             boolean repeatUploads, boolean sampleJvm) {
+        this.baseUrl = baseUrl;
+        this.rosterCsv = rosterCsv;
+        int newline = 0;
+        while (rosterCsv[newline] != '\n') {
+            newline++;
+        }
+        this.rosterHeaderLength = newline + 1;
+        this.repeatUploads = repeatUploads;
+        this.roster = roster;
+        this.sampleJvm = sampleJvm;
+        List<Scenario> weighted = new ArrayList<>();
+        mix.forEach((scenario, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(scenario);
+            }
+        });
+        this.weightedScenarios = weighted.toArray(new Scenario[0]);
+        // Redirects are followed by hand, so /download is timed on its own.
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    StepResult runStep(int concurrency, int seconds) throws Exception {
+        StepResult result = new StepResult(seconds);
+        JvmSampler sampler = sampleJvm ? new JvmSampler() : null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicBoolean stop = new AtomicBoolean();
+
+        Thread samplerThread = null;
+        if (sampler != null) {
+            samplerThread = new Thread(() -> sampler.run(stop), "loadtest-jvm-sampler");
+            samplerThread.setDaemon(true);
+            samplerThread.start();
+        }
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        for (int u = 0; u < concurrency; u++) {
+            users.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    runScenario(pickScenario(), result);
+                }
+            });
+        }
+        users.shutdown();
+        // Let the last requests finish; a step never waits more than two minutes for stragglers.
+        users.awaitTermination(seconds + 120L, TimeUnit.SECONDS);
+        users.shutdownNow();
+        stop.set(true);
+        if (samplerThread != null) {
+            samplerThread.join();
+        }
+        result.jvm = sampler == null ? null : sampler.finish();
+        return result;
+    }
+
+    private Scenario pickScenario() {
+        return weightedScenarios[ThreadLocalRandom.current().nextInt(weightedScenarios.length)];
+    }
+
+    private void runScenario(Scenario scenario, StepResult result) {
+        HttpRequest request;
+        Endpoint endpoint;
+        switch (scenario) {
+            case BADGES -> {
+                endpoint = Endpoint.GENERATE;
+                request = multipart(endpoint.path, "roster.csv", rosterUpload());
+            }
+            case LABELS -> {
+                endpoint = Endpoint.GENERATE_LABELS;
+                request = multipart(endpoint.path, "roster.csv", rosterUpload());
+            }
+            case BOTH -> {
+                endpoint = Endpoint.GENERATE_BOTH;
+                request = multipart(endpoint.path, "roster.csv", rosterUpload());
+            }
+            default -> {
+                endpoint = Endpoint.QUICK_LABEL;
+                Attendee attendee;
+                synchronized (roster) {
+                    attendee = roster.nextAttendee();
+                }
+                request = form(endpoint.path, Map.of(
+                        "name", attendee.getNameSurname(),
+                        "linkedin", attendee.getLinkedin(),
+                        "company", attendee.getCompany()));
+            }
+        }
+
+        String location = timed(endpoint, request, result, response -> {
+            // Success redirects to /download; failures redirect back to the form with a flash error.
+            String target = response.headers().firstValue("Location").orElse("");
+            return response.statusCode() == 302 && target.contains("/download") ? target : null;
+        });
+        if (location != null) {
+            HttpRequest download = HttpRequest.newBuilder(URI.create(baseUrl).resolve(location)).GET().build();
+            timed(Endpoint.DOWNLOAD, download, result, response -> response.statusCode() == 200 ? "" : null);
+        }
+    }
+
+    /** The roster to upload; unless uploads repeat, its header (skipped by the parser) is unique per request. */
+    private byte[] rosterUpload() {
+        if (repeatUploads) {
+            return rosterCsv;
+        }
+        byte[] header = ("Name,LinkedIn,Company,Upload " + runId + "-" + uploads.incrementAndGet() + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] upload = Arrays.copyOf(header, header.length + rosterCsv.length - rosterHeaderLength);
+        System.arraycopy(rosterCsv, rosterHeaderLength, upload, header.length, rosterCsv.length - rosterHeaderLength);
+        return upload;
+    }
+
+    /** Sends the request, drains the body and records latency; {@code check} returns null on failure. */
+    private String timed(Endpoint endpoint, HttpRequest request, StepResult result, ResponseCheck check) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long bytes;
+            try (InputStream body = response.body()) {
+                bytes = body.transferTo(OutputStream.nullOutputStream());
+            }
+            String value = check.check(response);
+            result.record(endpoint, System.nanoTime() - start, value != null, bytes);
+            return value;
+        } catch (Exception e) {
+            result.record(endpoint, System.nanoTime() - start, false, 0);
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseCheck {
+        String check(HttpResponse<InputStream> response);
+    }
+
+    private HttpRequest multipart(String path, String filename, byte[] content) {
+        String boundary = "----badgeqr" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n";
+        body.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest form(String path, Map<String, String> fields) {
+        StringBuilder body = new StringBuilder();
+        fields.forEach((name, value) -> {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        });
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    /** Latencies per endpoint for one step. */
+    static final class StepResult {
+        private final int seconds;
+        private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        private JvmStats jvm;
+
+        StepResult(int seconds) {
+            this.seconds = seconds;
+            for (Endpoint endpoint : Endpoint.values()) {
+                stats.put(endpoint, new EndpointStats());
+            }
+        }
+
+        void record(Endpoint endpoint, long nanos, boolean ok, long bytes) {
+            stats.get(endpoint).record(nanos, ok, bytes);
+        }
+
+        void print(PrintStream out) {
+            out.printf(Locale.ROOT, "  %-22s %8s %7s %8s %9s %9s %9s %9s %10s%n",
+                    "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "avg KB");
+            stats.forEach((endpoint, s) -> s.print(out, endpoint.path, seconds));
+            if (jvm != null) {
+                jvm.print(out, seconds);
+            }
+        }
+    }
+
+    static final class EndpointStats {
+        private long[] latencies = new long[256];
+        private int count;
+        private int errors;
+        private long bytes;
+
+        synchronized void record(long nanos, boolean ok, long responseBytes) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (ok) {
+                bytes += responseBytes;
+            } else {
+                errors++;
+            }
+        }
+
+        synchronized void print(PrintStream out, String name, int seconds) {
+            if (count == 0) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int ok = count - errors;
+            out.printf(Locale.ROOT, "  %-22s %8d %6.1f%% %8.2f %9.1f %9.1f %9.1f %9.1f %10.1f%n",
+                    name, count, 100.0 * errors / count, (double) ok / seconds,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), sorted[count - 1] / 1e6,
+                    ok == 0 ? 0 : bytes / 1024.0 / ok);
+        }
+
+        private static double percentile(long[] sorted, int p) {
+            int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /** Heap and GC of this JVM (the embedded app) over one step. */
+    static final class JvmSampler {
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        private final Map<String, long[]> gcAtStart = new LinkedHashMap<>();
+        private volatile long peakUsed;
+        private volatile long peakLiveAfterGc;
+
+        JvmSampler() {
+            for (GarbageCollectorMXBean gc : collectors) {
+                gcAtStart.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+            }
+        }
+
+        void run(AtomicBoolean stop) {
+            while (!stop.get()) {
+                sample();
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void sample() {
+            long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            // What survived the last collection of each pool: an estimate of the live set.
+            long live = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                if (pool.getCollectionUsage() != null) {
+                    live += pool.getCollectionUsage().getUsed();
+                }
+            }
+            peakUsed = Math.max(peakUsed, used);
+            peakLiveAfterGc = Math.max(peakLiveAfterGc, live);
+        }
+
+        JvmStats finish() {
+            sample();
+            Map<String, long[]> gcDelta = new LinkedHashMap<>();
+            for (GarbageCollectorMXBean gc : collectors) {
+                long[] start = gcAtStart.get(gc.getName());
+                gcDelta.put(gc.getName(), new long[]{gc.getCollectionCount() - start[0], gc.getCollectionTime() - start[1]});
+            }
+            return new JvmStats(peakUsed, peakLiveAfterGc, Runtime.getRuntime().maxMemory(), gcDelta);
+        }
+    }
+
+    record JvmStats(long peakUsed, long peakLiveAfterGc, long maxHeap, Map<String, long[]> gcDelta) {
+        void print(PrintStream out, int seconds) {
+            out.printf(Locale.ROOT, "  heap: peak used %.0f MB, peak live after GC %.0f MB, max %.0f MB%n",
+                    peakUsed / 1048576.0, peakLiveAfterGc / 1048576.0, maxHeap / 1048576.0);
+            long totalPause = 0;
+            StringBuilder collectors = new StringBuilder();
+            for (Map.Entry<String, long[]> e : gcDelta.entrySet()) {
+                totalPause += e.getValue()[1];
+                collectors.append(String.format(Locale.ROOT, "%s%s: %d collections, %d ms",
+                        collectors.length() == 0 ? "" : "; ", e.getKey(), e.getValue()[0], e.getValue()[1]));
+            }
+            out.printf(Locale.ROOT, "  gc: %s (%.1f%% of wall time)%n", collectors, 100.0 * totalPause / (seconds * 1000.0));
+        }
+    }
+
+    private static Map<Scenario, Integer> parseMix(String spec) {
+        Map<Scenario, Integer> mix = new EnumMap<>(Scenario.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length != 2) {
+                exitWithUsage("Bad --mix entry: " + part);
+            }
+            try {
+                int weight = Integer.parseInt(kv[1].trim());
+                if (weight > 0) {
+                    mix.put(Scenario.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), weight);
+                }
+            } catch (IllegalArgumentException e) {
+                exitWithUsage("Bad --mix entry: " + part);
+            }
+        }
+        if (mix.isEmpty()) {
+            exitWithUsage("--mix needs at least one positive weight");
+        }
+        return mix;
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            exitWithUsage("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
@@ -1,141 +1,182 @@
 package jug.org.qr;
 
-import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.*;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.*;
+import com.itextpdf.text.PageSize;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch generation for pre-event bulk runs, using the same engine as the web app.
+ *
+ * Input files are rendered concurrently (one document per file), and each document's QR codes
+ * are encoded on a shared pool sized to the machine. PDFs are written straight to disk.
+ */
+public class PDFWithQRCode {
 
-import static jug.org.qr.AttendeeService.readAttendeesFromCSV;
+    private static final String USAGE = String.join("\n",
+            "Usage: PDFWithQRCode [options] <roster.csv> [<roster.csv> ...]",
+            "  --format badge|label|sheet  badge = 80x80 pages (default), label = 80x50 pages,",
+            "                              sheet = badges imposed on A4 for cutting",
+            "  --layout <name>             any layout from badge-layouts.json (tile layout for sheets)",
+            "  --out <dir>                 output directory (default: badges)",
+            "  --threads <n>               worker threads (default: all cores)",
+            "  --compact                   compact PDF output (object streams, 1-bit QR images)");
 
-public class PDFWithQRCode {
+    private static final int BUFFER_SIZE = 1 << 16;
 
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.err.println("Please provide the path to the CSV file as a command-line argument.");
-            System.exit(1);
+        String format = "badge";
+        String layout = null;
+        String outDir = "badges";
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean compact = false;
+        List<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format" -> format = requireValue(args, ++i);
+                case "--layout" -> layout = requireValue(args, ++i);
+                case "--out" -> outDir = requireValue(args, ++i);
+                case "--threads" -> threads = requirePositive(args, ++i);
+                case "--compact" -> compact = true;
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        exitWithUsage("Unknown option: " + args[i]);
+                    }
+                    inputs.add(args[i]);
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            exitWithUsage("Please provide the path to at least one CSV file.");
+        }
+        if (!format.equals("badge") && !format.equals("label") && !format.equals("sheet")) {
+            exitWithUsage("Unknown format: " + format);
+        }
+        if (layout == null) {
+            layout = format.equals("label") ? LayoutPlans.LABEL_80X50 : LayoutPlans.BADGE_80X80;
         }
 
-        String csvFile = args[0]; // CSV file from command line
+        String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+        new File(outDir).mkdirs(); // Create output folder if not exist
 
+        ExecutorService qrPool = Executors.newFixedThreadPool(threads);
+        ExecutorService filePool = Executors.newFixedThreadPool(Math.min(threads, inputs.size()));
+        boolean failed = false;
         try {
-            List<Attendee> attendees = readAttendeesFromCSV(csvFile);
-
-            new File("badges").mkdir(); // Create output folder if not exist
-
-            // 80mm x 80mm page size setup
-            float mmToPoints = 72f / 25.4f;
-            float pageWidth = 80f * mmToPoints;
-            float pageHeight = 80f * mmToPoints;
-            Document document = new Document(new Rectangle(pageWidth, pageHeight));
-
-            // Get current date and time in the format YYYY-MM-DD_HH-MM-SS
-            String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-            // Set margins (adjust as needed)
-            document.setMargins(5f, 5f, 5f, 5f);  // Left, Right, Top, Bottom in points
-            // Use current date-time for the output PDF filename
-            String outputPdfPath = "badges/AllBadges_" + currentDateTime + ".pdf";
-
-
-            PdfWriter.getInstance(document, new FileOutputStream(outputPdfPath));
-            document.open();
+            BadgeService badgeService = new BadgeService();
+            badgeService.initFonts();
+            badgeService.setCompactPdf(compact);
+            LayoutPlan plan = badgeService.getLayoutPlan(layout);
+
+            long start = System.nanoTime();
+            List<Future<RunResult>> runs = new ArrayList<>();
+            for (String input : inputs) {
+                Path output = Path.of(outDir, baseName(input) + "_" + format + "_" + currentDateTime + ".pdf");
+                String fileFormat = format;
+                runs.add(filePool.submit(() -> render(badgeService, input, output, fileFormat, plan, qrPool)));
+            }
 
-            for (int i = 0; i < attendees.size(); i++) {
-                addBadgeToDocument(document, attendees.get(i));
-                if (i < attendees.size() - 1) {
-                    document.newPage(); // New page between badges
+            int totalAttendees = 0;
+            long totalBytes = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                try {
+                    RunResult result = runs.get(i).get();
+                    totalAttendees += result.attendees;
+                    totalBytes += result.bytes;
+                    System.out.println(result);
+                } catch (Exception e) {
+                    failed = true;
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Failed " + inputs.get(i) + ": " + cause.getMessage());
                 }
             }
-
-            document.close();
-            System.out.println("Generated combined badge file: " + outputPdfPath);
-
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "Total: %d files, %d attendees, %.1f MB in %.2f s (%.0f attendees/s, %d threads)%n",
+                    inputs.size(), totalAttendees, totalBytes / 1e6, seconds, totalAttendees / seconds, threads);
         } catch (Exception e) {
             e.printStackTrace();
+            failed = true;
+        } finally {
+            filePool.shutdownNow();
+            qrPool.shutdownNow();
+        }
+        if (failed) {
+            System.exit(1);
         }
     }
 
-    // Create a badge for each attendee
-
-    public static void addBadgeToDocument(Document document, Attendee attendee) throws Exception {
-        // Load DejaVuSans font from the resources folder as InputStream
-        InputStream fontStream = PDFWithQRCode.class.getClassLoader().getResourceAsStream("dejavu-fonts-ttf-2.37/ttf/DejaVuSans.ttf");
-
-        if (fontStream == null) {
-            throw new Exception("Font file not found in resources!");
+    private static RunResult render(BadgeService badgeService, String input, Path output, String format,
+                                    LayoutPlan plan, ExecutorService qrPool) throws Exception {
+        long start = System.nanoTime();
+        List<Attendee> attendees = AttendeeService.readAttendeesFromCSV(input);
+        long parsed = System.nanoTime();
+        if (attendees.isEmpty()) {
+            throw new IllegalArgumentException("No valid attendees found in CSV");
         }
 
-        // Copy the font to a temporary file
-        File tempFontFile = File.createTempFile("DejaVuSans", ".ttf");
-        tempFontFile.deleteOnExit(); // Make sure the temp file is deleted when the JVM exits
-        try (FileOutputStream out = new FileOutputStream(tempFontFile)) {
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = fontStream.read(buffer)) != -1) {
-                out.write(buffer, 0, length);
+        GenerationProgress progress = new GenerationProgress();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE)) {
+            if (format.equals("sheet")) {
+                badgeService.writeSheets(attendees.iterator(), plan, PageSize.A4, out, progress, qrPool);
+            } else {
+                badgeService.writePages(attendees.iterator(), plan, out, progress, qrPool);
             }
         }
+        long done = System.nanoTime();
+        return new RunResult(input, output, attendees.size(), Files.size(output), parsed - start, done - parsed);
+    }
 
-        // Create BaseFont from the temporary TTF file
-        BaseFont baseFont = BaseFont.createFont(tempFontFile.getAbsolutePath(), BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-
-        // Adjust font size based on name length
-        int nameFontSize = (attendee.getNameSurname().length() > 12) ? 16 : 22; // Smaller size for long names
-
-        Font nameFont = new Font(baseFont, nameFontSize, Font.BOLD);
-
-        // Add Name - 17pt Bold (Using DejaVuSans font that supports Turkish characters)
-        Paragraph nameParagraph = new Paragraph(attendee.getNameSurname(), nameFont);
-        nameParagraph.setAlignment(Element.ALIGN_CENTER);
-        nameParagraph.setSpacingAfter(1f); // Reduced space after name
-        document.add(nameParagraph);
-
-        // Add Company - 14pt Regular (Using the same font for consistency)
-        Font companyFont = new Font(baseFont, 14);
-        Paragraph companyParagraph = new Paragraph(attendee.getCompany(), companyFont);
-        companyParagraph.setAlignment(Element.ALIGN_CENTER);
-        companyParagraph.setSpacingAfter(2f); // Reduced space after company
-        document.add(companyParagraph);
-
-        // Generate QR Code
-        String qrPayload = LinkedInNormalizer.normalizeToQrPayload(attendee.getLinkedin());
-        Image qrImage = generateQRCodeImage(qrPayload);
-
-        // Scale QR code to 100px for better fit
-        int qrPixelSize = 150; // Reduced for better fit
-        qrImage.scaleToFit(qrPixelSize, qrPixelSize);
-        qrImage.setAlignment(Element.ALIGN_CENTER); // Center QR code
-        document.add(qrImage);
-
-        // Ensure no additional space is added to the page
-        document.add(new Paragraph("")); // Empty space to balance layout
+    private static String baseName(String path) {
+        String name = Path.of(path).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
     }
 
-    // Generate QR code image
-    public static Image generateQRCodeImage(String data) throws WriterException, IOException, BadElementException {
-        int qrPixelSize = 300; // High enough for quality
-        Map<EncodeHintType, Object> hints = new HashMap<>();
-        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            exitWithUsage("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
 
-        BitMatrix bitMatrix = new MultiFormatWriter().encode(data, BarcodeFormat.QR_CODE, qrPixelSize, qrPixelSize, hints);
-        BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
+    private static int requirePositive(String[] args, int index) {
+        String value = requireValue(args, index);
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        exitWithUsage(args[index - 1] + " needs a positive number, got: " + value);
+        return 0;
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "png", baos);
-        byte[] imageBytes = baos.toByteArray();
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(1);
+    }
 
-        return Image.getInstance(imageBytes);
+    private record RunResult(String input, Path output, int attendees, long bytes, long parseNanos, long renderNanos) {
+        @Override
+        public String toString() {
+            double renderSeconds = renderNanos / 1e9;
+            return String.format(Locale.ROOT, "%s -> %s: %d attendees, %.1f MB, parse %.0f ms, render %.2f s (%.0f attendees/s)",
+                    input, output, attendees, bytes / 1e6, parseNanos / 1e6, renderSeconds, attendees / renderSeconds);
+        }
     }
-}
\ No newline at end of file
+}
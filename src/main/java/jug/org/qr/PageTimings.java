@@ -0,0 +1,32 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stage timings of one sampled attendee, logged as a single key=value line on the
+ * {@code jug.org.qr.trace} logger once its page is written. Only every Nth attendee of a batch
+ * gets one (see {@code badgeqr.trace.sample-every}); for every page, record the {@link RenderEvents}.
+ */
+final class PageTimings {
+
+    private static final Logger log = LoggerFactory.getLogger("jug.org.qr.trace");
+
+    long vcardNanos;
+    // Written by the QR thread before its future completes; -1 when the image was shared.
+    long qrNanos = -1;
+    long qrWaitNanos;
+    long layoutNanos;
+    long writeNanos;
+
+    /** A timings holder when {@code attendeeIndex} is sampled, otherwise null. */
+    static PageTimings sample(int attendeeIndex, int sampleEvery) {
+        return sampleEvery > 0 && attendeeIndex % sampleEvery == 0 && log.isInfoEnabled() ? new PageTimings() : null;
+    }
+
+    void log(String layout, int attendeeIndex) {
+        log.info("page layout={} attendee={} vcardMicros={} qrMicros={} qrWaitMicros={} layoutMicros={} writeMicros={}",
+                layout, attendeeIndex, vcardNanos / 1000, qrNanos < 0 ? "shared" : qrNanos / 1000,
+                qrWaitNanos / 1000, layoutNanos / 1000, writeNanos / 1000);
+    }
+}
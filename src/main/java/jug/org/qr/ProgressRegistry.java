@@ -0,0 +1,54 @@
+package jug.org.qr;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Progress of in-flight batch generations, keyed by the id the page generates before submitting,
+ * so it can open the event stream before the (blocking) upload request returns.
+ *
+ * Each batch gets the render deadline from {@code badgeqr.render.deadline-seconds}, counted from
+ * when its progress is first tracked (the form submit).
+ */
+@Component
+public class ProgressRegistry {
+
+    private static final Pattern PROGRESS_ID = Pattern.compile("[A-Za-z0-9-]{8,64}");
+    private static final long RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Value("${badgeqr.render.deadline-seconds:0}")
+    private long deadlineSeconds;
+
+    private final ConcurrentHashMap<String, GenerationProgress> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the tracked progress for the id, creating it if needed. Ids that are missing or
+     * malformed get an untracked instance, so callers never need a null check.
+     */
+    public GenerationProgress track(String progressId) {
+        if (progressId == null || !PROGRESS_ID.matcher(progressId).matches()) {
+            return newProgress();
+        }
+        return entries.computeIfAbsent(progressId, id -> newProgress());
+    }
+
+    private GenerationProgress newProgress() {
+        GenerationProgress progress = new GenerationProgress();
+        progress.deadline(TimeUnit.SECONDS.toMillis(deadlineSeconds));
+        return progress;
+    }
+
+    public boolean isValidId(String progressId) {
+        return progressId != null && PROGRESS_ID.matcher(progressId).matches();
+    }
+
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MILLIS;
+        // Counted from when a batch finished: a long render keeps its entry, so a reconnecting page finds it.
+        entries.values().removeIf(progress -> progress.isStale(cutoff));
+    }
+}
@@ -0,0 +1,163 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch renders in flight or recently finished, keyed by everything that determines their PDF:
+ * the uploaded bytes, the layout and its version. A double-clicked Generate or a re-uploaded
+ * roster joins the render already running, or is handed the stored result while the store still
+ * has it, instead of rendering and storing another copy.
+ */
+@Component
+public class RecentBatches {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentBatches.class);
+
+    @Autowired
+    private ResultStore resultStore;
+
+    @Value("${badgeqr.dedup.ttl-minutes:5}")
+    private long ttlMinutes;
+
+    private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /** {@code reused} is true when the PDF was rendered for an earlier submission. */
+    public record Result(String fileId, boolean reused) {
+    }
+
+    @FunctionalInterface
+    public interface Render {
+        /** Renders the batch into the result store and returns its id. */
+        String render() throws Exception;
+    }
+
+    /** The dedup key of an upload: SHA-256 of its bytes, the layout and the output version. */
+    public String key(MultipartFile file, String layoutName, String outputVersion) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return key(in, layoutName, outputVersion);
+        }
+    }
+
+    /** The dedup key of the bytes {@code in} reads to its end, e.g. an assembled chunked upload. */
+    public String key(InputStream in, String layoutName, String outputVersion) throws IOException {
+        MessageDigest digest = sha256();
+        new DigestInputStream(in, digest).transferTo(OutputStream.nullOutputStream());
+        digest.update(("\n" + layoutName + "\n" + outputVersion).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the result for {@code key}: the stored result of a recent identical batch, the
+     * result of one still rendering (its progress is mirrored on {@code progress} meanwhile),
+     * or else what {@code render} produces. Failed renders are not remembered.
+     */
+    public Result render(String key, GenerationProgress progress, Render render) throws Exception {
+        while (true) {
+            Batch existing = batches.get(key);
+            if (existing != null) {
+                if (!existing.fileId.isDone()) {
+                    progress.follow(existing.progress);
+                    log.info("Joined in-flight batch {}", shortKey(key));
+                    try {
+                        return new Result(join(existing), true);
+                    } finally {
+                        progress.unfollow();
+                    }
+                }
+                String fileId = existing.fileId.getNow(null);
+                if (existing.isFresh(TimeUnit.MINUTES.toMillis(ttlMinutes)) && isStored(fileId)) {
+                    log.info("Reusing stored result of batch {}", shortKey(key));
+                    return new Result(fileId, true);
+                }
+                batches.remove(key, existing);
+                continue;
+            }
+
+            Batch mine = new Batch(progress);
+            if (batches.putIfAbsent(key, mine) != null) {
+                continue;
+            }
+            try {
+                String fileId = render.render();
+                mine.completedAt = System.currentTimeMillis();
+                mine.fileId.complete(fileId);
+                return new Result(fileId, false);
+            } catch (Exception e) {
+                batches.remove(key, mine);
+                mine.fileId.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    public void sweepExpired() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        for (Map.Entry<String, Batch> e : batches.entrySet()) {
+            Batch batch = e.getValue();
+            if (batch.fileId.isDone() && !batch.isFresh(ttlMillis)) {
+                batches.remove(e.getKey(), batch);
+            }
+        }
+    }
+
+    private static String join(Batch batch) throws Exception {
+        try {
+            return batch.fileId.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private boolean isStored(String fileId) throws IOException {
+        // Opening also counts as a read, so the stored result stays for another TTL.
+        try (StoredResult result = resultStore.open(fileId)) {
+            return result != null;
+        }
+    }
+
+    private static String shortKey(String key) {
+        return key.substring(0, 12);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Batch {
+        final GenerationProgress progress;
+        final CompletableFuture<String> fileId = new CompletableFuture<>();
+        // Written before fileId completes, read after it is done.
+        long completedAt;
+
+        Batch(GenerationProgress progress) {
+            this.progress = progress;
+        }
+
+        boolean isFresh(long ttlMillis) {
+            return System.currentTimeMillis() - completedAt < ttlMillis;
+        }
+    }
+}
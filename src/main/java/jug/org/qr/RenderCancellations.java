@@ -0,0 +1,51 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts batches stopped early (see {@link RenderCancelledException}), by reason. Every one is
+ * logged with the running totals and recorded as a {@code jug.org.qr.RenderCancelled} JFR event.
+ */
+@Component
+public class RenderCancellations {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderCancellations.class);
+
+    private final Map<RenderCancelledException.Reason, LongAdder> counts = new EnumMap<>(RenderCancelledException.Reason.class);
+
+    public RenderCancellations() {
+        for (RenderCancelledException.Reason reason : RenderCancelledException.Reason.values()) {
+            counts.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Counts {@code failure} if it is a cancellation not counted yet; other failures are left alone.
+     */
+    public void record(String endpoint, Exception failure) {
+        if (!(failure instanceof RenderCancelledException cancelled) || !cancelled.markRecorded()) {
+            return;
+        }
+        counts.get(cancelled.getReason()).increment();
+
+        RenderEvents.Cancelled event = new RenderEvents.Cancelled();
+        event.endpoint = endpoint;
+        event.reason = cancelled.getReason().name();
+        event.pagesRendered = cancelled.getPagesRendered();
+        event.commit();
+
+        log.info("Cancelled {} after {} pages: {} (so far: {} disconnected, {} past deadline)", endpoint,
+                cancelled.getPagesRendered(), cancelled.getReason().getDescription(),
+                count(RenderCancelledException.Reason.CLIENT_GONE), count(RenderCancelledException.Reason.DEADLINE));
+    }
+
+    public long count(RenderCancelledException.Reason reason) {
+        return counts.get(reason).sum();
+    }
+}
@@ -0,0 +1,54 @@
+package jug.org.qr;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thrown from a render loop at a page boundary once its batch has been cancelled, so the
+ * remaining pages are not rendered. The result store discards what was written so far.
+ */
+public class RenderCancelledException extends CancellationException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        /** Nobody has been watching the batch's progress for a while: the tab was closed. */
+        CLIENT_GONE("client disconnected"),
+        /** The batch ran past {@code badgeqr.render.deadline-seconds}. */
+        DEADLINE("deadline passed");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Reason reason;
+    private final int pagesRendered;
+    // Requests that joined the render rethrow this same instance.
+    private final AtomicBoolean recorded = new AtomicBoolean();
+
+    public RenderCancelledException(Reason reason, int pagesRendered) {
+        super("Rendering stopped after " + pagesRendered + " pages: " + reason.getDescription());
+        this.reason = reason;
+        this.pagesRendered = pagesRendered;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public int getPagesRendered() {
+        return pagesRendered;
+    }
+
+    /** True the first time only, so a render is counted once however many requests waited on it. */
+    boolean markRecorded() {
+        return recorded.compareAndSet(false, true);
+    }
+}
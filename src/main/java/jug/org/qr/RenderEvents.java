@@ -0,0 +1,108 @@
+package jug.org.qr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for the render pipeline: one per stage and attendee, plus one per
+ * batch. They cost next to nothing unless a recording is running, so production runs can be
+ * profiled as they are:
+ *
+ * {@code java -XX:StartFlightRecording:filename=badgeqr.jfr -jar badgeqr.jar}, then open the file
+ * in JDK Mission Control (category "BadgeQR") or {@code jfr print --events jug.org.qr.QrEncode badgeqr.jfr}.
+ */
+final class RenderEvents {
+
+    private RenderEvents() {
+    }
+
+    @Category({"BadgeQR", "Render"})
+    @StackTrace(false)
+    abstract static class Stage extends Event {
+        @Label("Attendee Index")
+        @Description("Zero-based position of the attendee in the roster")
+        int attendeeIndex;
+
+        void commitFor(int attendeeIndex) {
+            end();
+            if (shouldCommit()) {
+                this.attendeeIndex = attendeeIndex;
+                commit();
+            }
+        }
+    }
+
+    @Name("jug.org.qr.ParseRow")
+    @Label("Parse Row")
+    @Description("Reading and parsing the CSV up to the attendee's row, skipped rows included")
+    static final class ParseRow extends Stage {
+        @Label("Line")
+        int line;
+    }
+
+    @Name("jug.org.qr.VCard")
+    @Label("Build vCard")
+    static final class VCard extends Stage {
+    }
+
+    @Name("jug.org.qr.QrEncode")
+    @Label("Encode QR")
+    @Description("Encoding the vCard to a QR image; absent when the image is shared with an earlier identical payload")
+    static final class QrEncode extends Stage {
+        @Label("Payload Length")
+        int payloadLength;
+    }
+
+    @Name("jug.org.qr.Layout")
+    @Label("Lay Out Page")
+    @Description("Building the page table from the layout plan")
+    static final class Layout extends Stage {
+        @Label("Layout")
+        String layout;
+    }
+
+    @Name("jug.org.qr.PageWrite")
+    @Label("Write Page")
+    @Description("Adding the table to the document and flushing the previous page to the output")
+    static final class PageWrite extends Stage {
+        @Label("Layout")
+        String layout;
+    }
+
+    @Name("jug.org.qr.Batch")
+    @Label("Render Batch")
+    @Category({"BadgeQR"})
+    @StackTrace(false)
+    static final class Batch extends Event {
+        @Label("Layout")
+        String layout;
+
+        @Label("Pages")
+        int pages;
+
+        @Label("Output Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("jug.org.qr.RenderCancelled")
+    @Label("Render Cancelled")
+    @Description("A batch stopped before its last page because the client went away or its deadline passed")
+    @Category({"BadgeQR"})
+    @StackTrace(false)
+    static final class Cancelled extends Event {
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Reason")
+        String reason;
+
+        @Label("Pages Rendered")
+        int pagesRendered;
+    }
+}
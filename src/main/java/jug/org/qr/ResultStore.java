@@ -0,0 +1,33 @@
+package jug.org.qr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Holds generated PDFs between the POST that renders them and the follow-up GET /download.
+ * Disk-backed stores keep an entry until it has gone unread for the time-to-live, so an
+ * interrupted download can resume with a Range request; the in-memory store keeps an
+ * entry for the time-to-live from when it was stored.
+ */
+public interface ResultStore {
+
+    /** Stores the PDF and returns the id to pass to {@code /download?fileId=...}. */
+    String put(byte[] pdfBytes) throws IOException;
+
+    /**
+     * Stores whatever {@code writer} writes and returns its id. Disk-backed stores stream it
+     * to a file, so the PDF is never held on the heap as a whole.
+     */
+    String write(ResultWriter writer) throws Exception;
+
+    /** Opens the entry for reading, or returns null if it is unknown or expired. The caller closes it. */
+    StoredResult open(String fileId) throws IOException;
+
+    /** Drops entries older than the configured time-to-live. */
+    void sweepExpired();
+
+    @FunctionalInterface
+    interface ResultWriter {
+        void writeTo(OutputStream out) throws Exception;
+    }
+}
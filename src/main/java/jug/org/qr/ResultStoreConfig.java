@@ -0,0 +1,36 @@
+package jug.org.qr;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@Configuration(proxyBeanMethods = false)
+public class ResultStoreConfig {
+
+    @Bean
+    public ResultStore resultStore(
+            @Value("${badgeqr.store.type:spool}") String type,
+            @Value("${badgeqr.store.dir:}") String dir,
+            @Value("${badgeqr.store.ttl-minutes:5}") long ttlMinutes) throws IOException {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        switch (type) {
+            case "memory":
+                return new InMemoryResultStore(ttlMillis);
+            case "spool":
+                Path parent = dir.isBlank() ? Path.of(System.getProperty("java.io.tmpdir")) : Files.createDirectories(Path.of(dir));
+                return new SpoolResultStore(Files.createTempDirectory(parent, "badgeqr-results"), ttlMillis);
+            case "shared-dir":
+                if (dir.isBlank()) {
+                    throw new IllegalStateException("badgeqr.store.dir is required when badgeqr.store.type=shared-dir");
+                }
+                return new SharedDirectoryResultStore(Path.of(dir), ttlMillis);
+            default:
+                throw new IllegalStateException("Unknown badgeqr.store.type: " + type + " (expected spool, memory or shared-dir)");
+        }
+    }
+}
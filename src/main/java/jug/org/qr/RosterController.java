@@ -0,0 +1,99 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Desk reprints from the last uploaded roster (see {@link RosterIndex}):
+ *
+ * 1. {@code GET /roster/search?q=ayse yil} finds attendees as the user types.
+ * 2. {@code POST /roster/{id}/reprint} renders the chosen attendee's label and answers with the download URL.
+ *
+ * Ids carry the roster version, so a reprint never picks a row from a roster uploaded since the search.
+ */
+@Controller
+public class RosterController {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterController.class);
+
+    private static final int MAX_RESULTS = 50;
+
+    @Autowired
+    private RosterIndex rosterIndex;
+
+    @Autowired
+    private BadgeService badgeService;
+
+    @Autowired
+    private ResultStore resultStore;
+
+    public record Match(String id, String name, String company, String contact) {
+    }
+
+    public record SearchResult(int attendees, String loadedAt, int matches, List<Match> results) {
+    }
+
+    @GetMapping("/roster/search")
+    @ResponseBody
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        RosterIndex.Snapshot roster = rosterIndex.current();
+        if (roster == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "No roster uploaded yet"));
+        }
+        RosterIndex.Hits hits = roster.search(query, Math.max(1, Math.min(limit, MAX_RESULTS)));
+        List<Match> results = new ArrayList<>(hits.rows().length);
+        for (int row : hits.rows()) {
+            Attendee attendee = roster.attendee(row);
+            results.add(new Match(roster.version() + "-" + row, attendee.getNameSurname().trim(),
+                    attendee.getCompany(), attendee.getLinkedin()));
+        }
+        return ResponseEntity.ok(new SearchResult(roster.size(), roster.loadedAt().toString(), hits.total(), results));
+    }
+
+    @PostMapping("/roster/{id}/reprint")
+    @ResponseBody
+    public ResponseEntity<?> reprint(@PathVariable String id,
+                                     @RequestParam(value = "layout", required = false) String layout) {
+        RosterIndex.Snapshot roster = rosterIndex.current();
+        int dash = id.indexOf('-');
+        if (roster == null || dash < 0 || !id.substring(0, dash).equals(Long.toString(roster.version()))) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "The roster has been replaced since this search; please search again"));
+        }
+        int row;
+        try {
+            row = Integer.parseInt(id.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            row = -1;
+        }
+        if (row < 0 || row >= roster.size()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            long start = System.nanoTime();
+            String layoutName = layout != null ? layout : LayoutPlans.LABEL_80X50;
+            Attendee attendee = roster.attendee(row);
+            String fileId = resultStore.put(badgeService.generateSingle(attendee, layoutName));
+            log.info("Reprinted {} for roster row {} in {} ms", layoutName, row, (System.nanoTime() - start) / 1_000_000);
+            String filename = layoutName.replace('-', '_') + ".pdf";
+            return ResponseEntity.ok(Map.of("downloadUrl", "/download?fileId=" + fileId + "&filename=" + filename));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package jug.org.qr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The most recently uploaded roster, kept in memory so the desk can find an attendee while
+ * typing and reprint a lost badge from the indexed record instead of re-typing it.
+ *
+ * Stored column-wise: every distinct string once, UTF-8 in a single byte array, and one int
+ * column per field. Search terms (folded name and company words, LinkedIn handles, emails) form
+ * a sorted dictionary with packed posting lists; a trigram index over the terms answers
+ * substring queries. 100k attendees take about 12 MB.
+ */
+@Component
+public class RosterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(RosterIndex.class);
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Snapshot current;
+
+    /** The indexed roster, or null before the first upload. */
+    public Snapshot current() {
+        return current;
+    }
+
+    public Builder newBuilder() {
+        return new Builder();
+    }
+
+    /** Replaces the indexed roster; searches already running finish on the old one. */
+    public void publish(Builder builder) {
+        long start = System.nanoTime();
+        Snapshot snapshot = builder.build(versions.incrementAndGet());
+        current = snapshot;
+        log.info("Indexed roster: {} attendees, {} search terms in {} ms", snapshot.size(), snapshot.termCount(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Search hits: attendee rows, best first, and how many rows matched in total. */
+    public record Hits(int[] rows, int total) {
+    }
+
+    /** An immutable indexed roster. Rows are numbered in CSV order from 0. */
+    public static final class Snapshot {
+        private final long version;
+        private final Instant loadedAt;
+
+        private final byte[] text;
+        private final int[] textOffsets;
+        private final int[] names;
+        private final int[] surnames;
+        private final int[] companies;
+        private final int[] contacts;
+
+        // Folded ASCII terms in sorted order, each with the rows it occurs in.
+        private final byte[] termText;
+        private final int[] termOffsets;
+        private final int[] postingOffsets;
+        private final int[] postings;
+
+        // Sorted packed trigrams, each with the (ascending) ids of the terms containing it.
+        private final int[] trigrams;
+        private final int[] trigramOffsets;
+        private final int[] trigramTerms;
+
+        private Snapshot(long version, byte[] text, int[] textOffsets, int[] names, int[] surnames, int[] companies,
+                         int[] contacts, byte[] termText, int[] termOffsets, int[] postingOffsets, int[] postings,
+                         int[] trigrams, int[] trigramOffsets, int[] trigramTerms) {
+            this.version = version;
+            this.loadedAt = Instant.now();
+            this.text = text;
+            this.textOffsets = textOffsets;
+            this.names = names;
+            this.surnames = surnames;
+            this.companies = companies;
+            this.contacts = contacts;
+            this.termText = termText;
+            this.termOffsets = termOffsets;
+            this.postingOffsets = postingOffsets;
+            this.postings = postings;
+            this.trigrams = trigrams;
+            this.trigramOffsets = trigramOffsets;
+            this.trigramTerms = trigramTerms;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public Instant loadedAt() {
+            return loadedAt;
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        int termCount() {
+            return termOffsets.length - 1;
+        }
+
+        public Attendee attendee(int row) {
+            return new Attendee(string(names[row]), string(surnames[row]), string(contacts[row]), string(companies[row]));
+        }
+
+        /**
+         * Rows matching every word of {@code query}: a word matches a term it prefixes or, from
+         * three characters on, any term containing it. Rows where every word is a prefix come first.
+         */
+        public Hits search(String query, int limit) {
+            List<byte[]> words = queryWords(query);
+            if (words.isEmpty()) {
+                return new Hits(new int[0], 0);
+            }
+            BitSet matched = null;
+            BitSet prefixed = null;
+            for (byte[] word : words) {
+                BitSet any = new BitSet(size());
+                BitSet prefix = new BitSet(size());
+                if (word.length < 3) {
+                    for (int term = lowerBound(word); term < termCount() && startsWith(term, word); term++) {
+                        addPostings(term, any);
+                        addPostings(term, prefix);
+                    }
+                } else {
+                    for (int term : candidateTerms(word)) {
+                        int at = indexOf(term, word);
+                        if (at >= 0) {
+                            addPostings(term, any);
+                            if (at == 0) {
+                                addPostings(term, prefix);
+                            }
+                        }
+                    }
+                }
+                if (matched == null) {
+                    matched = any;
+                    prefixed = prefix;
+                } else {
+                    matched.and(any);
+                    prefixed.and(prefix);
+                }
+            }
+
+            int total = matched.cardinality();
+            int[] rows = new int[Math.min(limit, total)];
+            int n = 0;
+            for (int row = prefixed.nextSetBit(0); row >= 0 && n < rows.length; row = prefixed.nextSetBit(row + 1)) {
+                rows[n++] = row;
+            }
+            matched.andNot(prefixed);
+            for (int row = matched.nextSetBit(0); row >= 0 && n < rows.length; row = matched.nextSetBit(row + 1)) {
+                rows[n++] = row;
+            }
+            return new Hits(rows, total);
+        }
+
+        private String string(int id) {
+            return new String(text, textOffsets[id], textOffsets[id + 1] - textOffsets[id], StandardCharsets.UTF_8);
+        }
+
+        private void addPostings(int term, BitSet rows) {
+            for (int i = postingOffsets[term]; i < postingOffsets[term + 1]; i++) {
+                rows.set(postings[i]);
+            }
+        }
+
+        /** Terms holding every trigram of {@code word}; may include terms that hold them out of order. */
+        private int[] candidateTerms(byte[] word) {
+            int[][] lists = new int[word.length - 2][];
+            for (int i = 0; i < lists.length; i++) {
+                int key = Arrays.binarySearch(trigrams, trigram(word, i));
+                if (key < 0) {
+                    return new int[0];
+                }
+                lists[i] = Arrays.copyOfRange(trigramTerms, trigramOffsets[key], trigramOffsets[key + 1]);
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+            int[] result = lists[0];
+            for (int i = 1; i < lists.length && result.length > 0; i++) {
+                result = intersect(result, lists[i]);
+            }
+            return result;
+        }
+
+        /** First term not less than {@code word}. */
+        private int lowerBound(byte[] word) {
+            int lo = 0;
+            int hi = termCount();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Arrays.compare(termText, termOffsets[mid], termOffsets[mid + 1], word, 0, word.length) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private boolean startsWith(int term, byte[] word) {
+            int start = termOffsets[term];
+            return termOffsets[term + 1] - start >= word.length
+                    && Arrays.equals(termText, start, start + word.length, word, 0, word.length);
+        }
+
+        private int indexOf(int term, byte[] word) {
+            int start = termOffsets[term];
+            int last = termOffsets[term + 1] - word.length;
+            for (int i = start; i <= last; i++) {
+                if (Arrays.equals(termText, i, i + word.length, word, 0, word.length)) {
+                    return i - start;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Collects attendees for the next snapshot; not thread-safe. */
+    public static final class Builder {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        private final IntList textOffsets = new IntList();
+        private final IntList names = new IntList();
+        private final IntList surnames = new IntList();
+        private final IntList companies = new IntList();
+        private final IntList contacts = new IntList();
+        private final Map<String, IntList> termRows = new HashMap<>();
+
+        private Builder() {
+            textOffsets.add(0);
+        }
+
+        public void add(Attendee attendee) {
+            int row = names.size();
+            names.add(intern(attendee.getName()));
+            surnames.add(intern(attendee.getSurname()));
+            companies.add(intern(attendee.getCompany()));
+            contacts.add(intern(attendee.getLinkedin()));
+
+            addTerms(fold(attendee.getNameSurname()), row);
+            addTerms(fold(attendee.getCompany()), row);
+            String handle = LinkedInNormalizer.extractHandle(attendee.getLinkedin());
+            // Emails fold to a single term; other contact forms are not worth searching.
+            addTerms(handle.isEmpty() ? fold(attendee.getLinkedin()) : handle, row);
+        }
+
+        /** Passes {@code attendees} through, adding each one as it is read. */
+        public Iterator<Attendee> indexing(Iterator<Attendee> attendees) {
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return attendees.hasNext();
+                }
+
+                @Override
+                public Attendee next() {
+                    Attendee attendee = attendees.next();
+                    add(attendee);
+                    return attendee;
+                }
+            };
+        }
+
+        private int intern(String value) {
+            String s = value == null ? "" : value;
+            Integer id = stringIds.get(s);
+            if (id == null) {
+                id = stringIds.size();
+                stringIds.put(s, id);
+                text.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+                textOffsets.add(text.size());
+            }
+            return id;
+        }
+
+        private void addTerms(String folded, int row) {
+            for (String term : folded.split(" ")) {
+                if (!term.isEmpty()) {
+                    IntList rows = termRows.computeIfAbsent(term, k -> new IntList());
+                    // A word can occur twice for one attendee (name and company)
+                    if (rows.size() == 0 || rows.last() != row) {
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+
+        private Snapshot build(long version) {
+            String[] terms = termRows.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+
+            ByteArrayOutputStream termText = new ByteArrayOutputStream();
+            int[] termOffsets = new int[terms.length + 1];
+            int[] postingOffsets = new int[terms.length + 1];
+            IntList postings = new IntList();
+            Map<Integer, IntList> trigramTerms = new HashMap<>();
+            for (int t = 0; t < terms.length; t++) {
+                byte[] term = terms[t].getBytes(StandardCharsets.US_ASCII);
+                termText.writeBytes(term);
+                termOffsets[t + 1] = termText.size();
+                postings.addAll(termRows.get(terms[t]));
+                postingOffsets[t + 1] = postings.size();
+                for (int i = 0; i + 3 <= term.length; i++) {
+                    IntList ids = trigramTerms.computeIfAbsent(trigram(term, i), k -> new IntList());
+                    if (ids.size() == 0 || ids.last() != t) {
+                        ids.add(t);
+                    }
+                }
+            }
+
+            int[] trigrams = trigramTerms.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] trigramOffsets = new int[trigrams.length + 1];
+            IntList packed = new IntList();
+            for (int i = 0; i < trigrams.length; i++) {
+                packed.addAll(trigramTerms.get(trigrams[i]));
+                trigramOffsets[i + 1] = packed.size();
+            }
+
+            return new Snapshot(version, text.toByteArray(), textOffsets.toArray(), names.toArray(), surnames.toArray(),
+                    companies.toArray(), contacts.toArray(), termText.toByteArray(), termOffsets, postingOffsets,
+                    postings.toArray(), trigrams, trigramOffsets, packed.toArray());
+        }
+    }
+
+    /**
+     * Folds text for matching: accents and case dropped ({@code Çağla Öztürk} to {@code cagla ozturk}),
+     * apostrophes removed, and anything but ASCII letters, digits and {@code @ . _ -} turned into spaces.
+     */
+    static String fold(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = Character.toLowerCase(decomposed.charAt(i));
+            switch (c) {
+                case 'ı' -> sb.append('i');
+                case 'ø' -> sb.append('o');
+                case 'ł' -> sb.append('l');
+                case 'æ' -> sb.append("ae");
+                case 'ß' -> sb.append("ss");
+                case '\'', '’' -> {
+                    // O'Brien is searched as obrien
+                }
+                default -> {
+                    if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '@' || c == '.' || c == '_' || c == '-') {
+                        sb.append(c);
+                    } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                        sb.append(' ');
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<byte[]> queryWords(String query) {
+        String folded;
+        // A pasted profile URL or in/ suffix is searched by its handle.
+        if (query.contains("/")) {
+            String handle = LinkedInNormalizer.extractHandle(query);
+            folded = handle.isEmpty() ? fold(query) : handle;
+        } else {
+            folded = fold(query);
+        }
+        List<byte[]> words = new ArrayList<>();
+        for (String word : folded.split(" ")) {
+            if (!word.isEmpty()) {
+                words.add(word.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return words;
+    }
+
+    /** Three folded (7-bit) characters packed into one int. */
+    private static int trigram(byte[] term, int at) {
+        return (term[at] << 14) | (term[at + 1] << 7) | term[at + 2];
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int last() {
+            return values[size - 1];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package jug.org.qr;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits a roster into one shard per printer, so the shards can be rendered and printed in parallel.
+ */
+public final class RosterShards {
+
+    public static final int MAX_SHARDS = 16;
+
+    // Rosters are mostly Turkish names: Ç after C, Ş after S, İ/I as distinct letters.
+    private static final Locale ROSTER_LOCALE = Locale.forLanguageTag("tr-TR");
+
+    public enum Strategy {
+        /** Contiguous alphabetical ranges of (last-word) surnames, equal in size; pages sorted by surname. */
+        SURNAME,
+        /** Whole companies per shard, balanced by attendee count; pages grouped by company. */
+        COMPANY,
+        /** Attendee i goes to shard i mod N; pages keep the CSV order. */
+        ROUND_ROBIN;
+
+        public static Strategy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown shard strategy: " + value + " (expected surname, company or round-robin)");
+            }
+        }
+    }
+
+    /** One printer's share; {@code label} describes it for file names, e.g. {@code A-F}. */
+    public record Shard(int number, int count, String label, List<Attendee> attendees) {
+    }
+
+    private RosterShards() {
+    }
+
+    /** Returns up to {@code shardCount} non-empty shards, numbered from 1. */
+    public static List<Shard> partition(List<Attendee> attendees, Strategy strategy, int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Number of shards must be between 1 and " + MAX_SHARDS);
+        }
+        List<List<Attendee>> buckets = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        switch (strategy) {
+            case SURNAME -> bySurname(attendees, shardCount, buckets, labels);
+            case COMPANY -> byCompany(attendees, shardCount, buckets, labels);
+            case ROUND_ROBIN -> roundRobin(attendees, shardCount, buckets, labels);
+        }
+
+        // Fewer attendees (or companies) than printers leaves some buckets empty; drop them.
+        int nonEmpty = (int) buckets.stream().filter(bucket -> !bucket.isEmpty()).count();
+        List<Shard> shards = new ArrayList<>(nonEmpty);
+        for (int i = 0; i < buckets.size(); i++) {
+            if (!buckets.get(i).isEmpty()) {
+                shards.add(new Shard(shards.size() + 1, nonEmpty, labels.get(i), buckets.get(i)));
+            }
+        }
+        return shards;
+    }
+
+    private static void bySurname(List<Attendee> attendees, int shardCount,
+                                  List<List<Attendee>> buckets, List<String> labels) {
+        Collator collator = Collator.getInstance(ROSTER_LOCALE);
+        List<Attendee> sorted = new ArrayList<>(attendees);
+        sorted.sort(Comparator.comparing(RosterShards::surnameKey, collator)
+                .thenComparing(Attendee::getNameSurname, collator));
+
+        int total = sorted.size();
+        for (int i = 0; i < shardCount; i++) {
+            List<Attendee> bucket = sorted.subList((int) ((long) i * total / shardCount), (int) ((long) (i + 1) * total / shardCount));
+            buckets.add(bucket);
+            labels.add(bucket.isEmpty() ? "" : initial(bucket.get(0)) + "-" + initial(bucket.get(bucket.size() - 1)));
+        }
+    }
+
+    private static void byCompany(List<Attendee> attendees, int shardCount,
+                                  List<List<Attendee>> buckets, List<String> labels) {
+        Map<String, List<Attendee>> byCompany = new LinkedHashMap<>();
+        for (Attendee attendee : attendees) {
+            String company = attendee.getCompany() == null ? "" : attendee.getCompany().trim();
+            byCompany.computeIfAbsent(company.toLowerCase(ROSTER_LOCALE), k -> new ArrayList<>()).add(attendee);
+        }
+
+        // Largest company first onto the least loaded shard keeps the shards close in size.
+        List<List<Attendee>> groups = new ArrayList<>(byCompany.values());
+        groups.sort(Comparator.comparingInt((List<Attendee> g) -> g.size()).reversed());
+        List<List<List<Attendee>>> assigned = new ArrayList<>();
+        int[] load = new int[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (List<Attendee> group : groups) {
+            int target = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (load[i] < load[target]) {
+                    target = i;
+                }
+            }
+            assigned.get(target).add(group);
+            load[target] += group.size();
+        }
+
+        Collator collator = Collator.getInstance(ROSTER_LOCALE);
+        for (List<List<Attendee>> shardGroups : assigned) {
+            shardGroups.sort(Comparator.comparing((List<Attendee> g) -> companyName(g.get(0)), collator));
+            List<Attendee> bucket = new ArrayList<>();
+            shardGroups.forEach(bucket::addAll);
+            buckets.add(bucket);
+            if (shardGroups.size() == 1) {
+                String name = companyName(bucket.get(0));
+                labels.add(name.isEmpty() ? "no company" : name);
+            } else {
+                labels.add(shardGroups.size() + " companies");
+            }
+        }
+    }
+
+    private static void roundRobin(List<Attendee> attendees, int shardCount,
+                                   List<List<Attendee>> buckets, List<String> labels) {
+        for (int i = 0; i < shardCount; i++) {
+            buckets.add(new ArrayList<>(attendees.size() / shardCount + 1));
+            labels.add("");
+        }
+        for (int i = 0; i < attendees.size(); i++) {
+            buckets.get(i % shardCount).add(attendees.get(i));
+        }
+    }
+
+    /** The last word of the full name: "Mehmet Ali Bakırcıoğlu" sorts under B. */
+    private static String surnameKey(Attendee attendee) {
+        String full = attendee.getNameSurname().trim();
+        int space = full.lastIndexOf(' ');
+        return space < 0 ? full : full.substring(space + 1);
+    }
+
+    private static String initial(Attendee attendee) {
+        String key = surnameKey(attendee);
+        return key.isEmpty() ? "" : key.substring(0, key.offsetByCodePoints(0, 1)).toUpperCase(ROSTER_LOCALE);
+    }
+
+    private static String companyName(Attendee attendee) {
+        return attendee.getCompany() == null ? "" : attendee.getCompany().trim();
+    }
+}
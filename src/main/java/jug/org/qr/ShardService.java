@@ -0,0 +1,188 @@
+package jug.org.qr;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Sharded batches for running several printers in parallel: the roster is split with
+ * {@link RosterShards} and every shard is rendered to its own PDF at the same time.
+ */
+@Service
+public class ShardService {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Autowired
+    private BadgeService badgeService;
+
+    @Autowired
+    private ResultStore resultStore;
+
+    // Shared by all requests, so concurrent sharded batches cannot oversubscribe the CPUs.
+    private final ExecutorService renderPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    /** A rendered shard waiting in the result store. */
+    public record ShardDownload(String label, int pages, String fileId, String filename) {
+    }
+
+    /** Renders the shards into the result store, one download each. */
+    public List<ShardDownload> generateShards(MultipartFile file, String layoutName, RosterShards.Strategy strategy,
+                                              int shardCount, GenerationProgress progress) throws Exception {
+        LayoutPlan plan = badgeService.getLayoutPlan(layoutName);
+        List<RosterShards.Shard> shards = partition(file, strategy, shardCount, progress);
+
+        List<ShardDownload> downloads = renderConcurrently(shards, shard -> new ShardDownload(
+                shard.number() + " of " + shard.count() + (shard.label().isEmpty() ? "" : " (" + shard.label() + ")"),
+                shard.attendees().size(),
+                resultStore.write(out -> badgeService.writeShard(shard.attendees(), plan, out, progress)),
+                shardFilename(layoutName, shard, ".pdf")));
+        progress.finishing();
+        return downloads;
+    }
+
+    /** Renders the shards and returns the result-store id of a ZIP holding one PDF per shard. */
+    public String generateShardArchive(MultipartFile file, String layoutName, RosterShards.Strategy strategy,
+                                       int shardCount, GenerationProgress progress) throws Exception {
+        LayoutPlan plan = badgeService.getLayoutPlan(layoutName);
+        List<RosterShards.Shard> shards = partition(file, strategy, shardCount, progress);
+
+        List<Path> rendered = new ArrayList<>();
+        try {
+            List<Path> files = renderConcurrently(shards, shard -> {
+                Path temp = Files.createTempFile("badgeqr-shard", ".pdf");
+                synchronized (rendered) {
+                    rendered.add(temp);
+                }
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                    badgeService.writeShard(shard.attendees(), plan, out, progress);
+                }
+                return temp;
+            });
+            progress.finishing();
+
+            return resultStore.write(out -> {
+                ZipOutputStream zip = new ZipOutputStream(out);
+                // The PDFs are compressed already; deflating them again only costs time.
+                zip.setLevel(Deflater.NO_COMPRESSION);
+                for (int i = 0; i < shards.size(); i++) {
+                    zip.putNextEntry(new ZipEntry(shardFilename(layoutName, shards.get(i), ".pdf")));
+                    Files.copy(files.get(i), zip);
+                    zip.closeEntry();
+                }
+                zip.finish();
+            });
+        } finally {
+            for (Path temp : rendered) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    private List<RosterShards.Shard> partition(MultipartFile file, RosterShards.Strategy strategy, int shardCount,
+                                               GenerationProgress progress) throws Exception {
+        List<Attendee> attendees;
+        try (InputStream csv = file.getInputStream()) {
+            attendees = badgeService.readAttendees(csv, progress);
+        }
+        List<RosterShards.Shard> shards = RosterShards.partition(attendees, strategy, shardCount);
+        System.out.println("Sharded " + attendees.size() + " attendees " + strategy + " into " + shards.size() + " shards");
+        progress.renderingStarted();
+        return shards;
+    }
+
+    /**
+     * Renders every shard on the pool. When one fails, the others are stopped, and this returns
+     * only once none of them is still running, so the caller can clean up what they wrote.
+     */
+    private <T> List<T> renderConcurrently(List<RosterShards.Shard> shards, ShardRenderer<T> renderer) throws Exception {
+        List<ShardTask<T>> tasks = new ArrayList<>(shards.size());
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (RosterShards.Shard shard : shards) {
+            ShardTask<T> task = new ShardTask<>(shard, renderer);
+            tasks.add(task);
+            futures.add(renderPool.submit(task));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            List<ShardTask<T>> started = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (!tasks.get(i).started.compareAndSet(false, true)) {
+                    // Running or done: interrupt it, then wait below, since cancelling alone does not.
+                    futures.get(i).cancel(true);
+                    started.add(tasks.get(i));
+                }
+            }
+            for (ShardTask<T> task : started) {
+                task.finished.await();
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return results;
+    }
+
+    private static String shardFilename(String layoutName, RosterShards.Shard shard, String extension) {
+        // Labels can be company names; keep them usable as file and ZIP entry names.
+        String label = shard.label().isEmpty() ? "" : "_" + shard.label().replaceAll("[^\\p{L}\\p{N}-]+", "_");
+        return layoutName + "_shard" + shard.number() + "-of-" + shard.count() + label + extension;
+    }
+
+    @FunctionalInterface
+    private interface ShardRenderer<T> {
+        T render(RosterShards.Shard shard) throws Exception;
+    }
+
+    /** One shard's render; a task claimed before it started never runs. */
+    private static final class ShardTask<T> implements Callable<T> {
+        final AtomicBoolean started = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+        private final RosterShards.Shard shard;
+        private final ShardRenderer<T> renderer;
+
+        ShardTask(RosterShards.Shard shard, ShardRenderer<T> renderer) {
+            this.shard = shard;
+            this.renderer = renderer;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (!started.compareAndSet(false, true)) {
+                throw new CancellationException("Another shard failed");
+            }
+            try {
+                return renderer.render(shard);
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
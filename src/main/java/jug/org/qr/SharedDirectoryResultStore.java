@@ -0,0 +1,124 @@
+package jug.org.qr;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Result store on a directory shared by all instances (NFS, EFS, a mounted volume...),
+ * so the GET /download can land on a different node than the POST that rendered the PDF.
+ *
+ * No locks are taken:
+ * - writes go to a unique temp file that is atomically renamed to {@code <id>.pdf},
+ *   so readers never see a partial file;
+ * - a download opens the file and bumps its modification time, so a resumed (Range) download
+ *   can land on any node until the file has gone unread for the TTL;
+ * - every node sweeps files older than the TTL; deletes are idempotent, and a download that
+ *   already has the file open keeps reading it.
+ */
+public class SharedDirectoryResultStore implements ResultStore {
+
+    private static final String PDF_SUFFIX = ".pdf";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Pattern FILE_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final Path directory;
+    private final long ttlMillis;
+
+    public SharedDirectoryResultStore(Path directory, long ttlMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public String put(byte[] pdfBytes) throws IOException {
+        String fileId = UUID.randomUUID().toString();
+        Path temp = directory.resolve(fileId + PDF_SUFFIX + TEMP_SUFFIX);
+        try {
+            Files.write(temp, pdfBytes);
+            moveAtomically(temp, directory.resolve(fileId + PDF_SUFFIX));
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return fileId;
+    }
+
+    @Override
+    public String write(ResultWriter writer) throws Exception {
+        String fileId = UUID.randomUUID().toString();
+        Path temp = directory.resolve(fileId + PDF_SUFFIX + TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                writer.writeTo(out);
+            }
+            moveAtomically(temp, directory.resolve(fileId + PDF_SUFFIX));
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return fileId;
+    }
+
+    @Override
+    public StoredResult open(String fileId) throws IOException {
+        // The id comes from the query string; never let it escape the directory.
+        if (fileId == null || !FILE_ID.matcher(fileId).matches()) {
+            return null;
+        }
+        Path file = directory.resolve(fileId + PDF_SUFFIX);
+        StoredResult result;
+        try {
+            result = StoredResult.open(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Swept meanwhile; the open handle still reads it.
+        }
+        return result;
+    }
+
+    @Override
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean ours = name.endsWith(PDF_SUFFIX) || name.endsWith(TEMP_SUFFIX);
+                if (!ours) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Swept by another instance in the meantime.
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Result store sweep failed for " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            throw new IOException("Shared result directory must support atomic rename: " + target.getParent(), e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package jug.org.qr;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-JVM result store that renders straight into temp files; the index holds only their paths,
+ * so heap use does not grow with the size of the PDFs. Entries stay until they have gone
+ * unread for the TTL, so interrupted downloads can resume.
+ */
+public class SpoolResultStore implements ResultStore {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final long ttlMillis;
+
+    public SpoolResultStore(Path directory, long ttlMillis) {
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public String put(byte[] pdfBytes) throws IOException {
+        try {
+            return write(out -> out.write(pdfBytes));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String write(ResultWriter writer) throws Exception {
+        String fileId = UUID.randomUUID().toString();
+        Path temp = directory.resolve(fileId + ".pdf.tmp");
+        Path file = directory.resolve(fileId + ".pdf");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+                writer.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        entries.put(fileId, new Entry(file, System.currentTimeMillis()));
+        return fileId;
+    }
+
+    @Override
+    public StoredResult open(String fileId) throws IOException {
+        Entry entry = entries.computeIfPresent(fileId, (id, e) -> new Entry(e.file, System.currentTimeMillis()));
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return StoredResult.open(entry.file);
+        } catch (NoSuchFileException e) {
+            entries.remove(fileId, entry);
+            return null;
+        }
+    }
+
+    @Override
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().lastReadAt < cutoff && entries.remove(e.getKey(), e.getValue())) {
+                try {
+                    // Open downloads keep reading through their handle.
+                    Files.deleteIfExists(e.getValue().file);
+                } catch (IOException ex) {
+                    System.err.println("Could not delete result " + e.getValue().file + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private record Entry(Path file, long lastReadAt) {
+    }
+}
@@ -0,0 +1,78 @@
+package jug.org.qr;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A stored PDF opened for download: either bytes on the heap or an open file.
+ * The file stays readable through this handle even if the store deletes it meanwhile.
+ */
+public final class StoredResult implements Closeable {
+
+    private final byte[] bytes;
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+
+    private StoredResult(byte[] bytes, Path file, FileChannel channel, long size) {
+        this.bytes = bytes;
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    static StoredResult of(byte[] bytes) {
+        return new StoredResult(bytes, null, null, bytes.length);
+    }
+
+    /** Throws NoSuchFileException if the file is gone. */
+    static StoredResult open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new StoredResult(null, file, channel, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /** The file behind the result, or null when it is held in memory. */
+    public Path getFile() {
+        return file;
+    }
+
+    /** Writes {@code count} bytes starting at {@code position}; files go through {@link FileChannel#transferTo}. */
+    public void writeTo(long position, long count, OutputStream out) throws IOException {
+        if (bytes != null) {
+            out.write(bytes, (int) position, (int) count);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        long end = position + count;
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) {
+                throw new EOFException("Result file ended at " + position + " of " + size + " bytes");
+            }
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package jug.org.qr;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Realistic fake rosters for load tests: Turkish and other Unicode names (some very long),
+ * long and missing companies, and the LinkedIn/email forms people actually paste
+ * (handles, {@code in/} suffixes, full and regional URLs with tracking queries, emails).
+ * About 1% of rows lack the contact column and are skipped by the parser, as in real exports.
+ *
+ * Usage: SyntheticRoster <rows> [<out.csv>] [--seed <n>]   (writes to stdout without a file)
+ */
+public final class SyntheticRoster {
+
+    private static final String[] FIRST_NAMES = {
+            "Ayşe", "Mehmet", "Zeynep", "Mustafa", "Elif", "Ömer", "İpek", "Şule", "Çağla", "Gökhan",
+            "Ali", "Deniz", "Emre", "Gül", "Hüseyin", "Ümit", "Özge", "Ilgın", "Barış", "Sıla",
+            "Burak", "Tuğçe", "Anıl", "Nazlı", "Kaan", "John", "María José", "François", "Søren", "Zoë"};
+    private static final String[] SURNAMES = {
+            "Yılmaz", "Kaya", "Demir", "Şahin", "Çelik", "Öztürk", "Aydın", "Arslan", "Doğan", "Kılıç",
+            "Ünal", "Işık", "Bakırcıoğlu", "Zengin", "Esen", "Güneş", "Karaoğlanoğlu", "Çakıroğlu", "Smith",
+            "García Márquez", "Müller", "O'Brien", "Nørgaard"};
+    private static final String[] LONG_NAMES = {
+            "Abdurrahman Mehmetcan Karaoğlanoğlu", "Christopher Alexander Montgomery-Smith",
+            "Ayşegül Nur Büyükçekmeceli Özkırımlı", "Muhammed Fatih Sarıkamışlıoğlu"};
+    private static final String[] COMPANIES = {
+            "ACME", "Trendyol", "Getir", "Sabancı", "Koç Holding", "Turkcell", "Türk Telekom", "Garanti BBVA",
+            "Türkiye İş Bankası A.Ş.", "Yapı Kredi Teknoloji", "Freelance", "Istanbul Technical University",
+            "Türkiye Cumhuriyeti Merkez Bankası Anonim Şirketi",
+            "Very Long International Consulting and Software Solutions Ltd. Şti."};
+    private static final String[] EMAIL_DOMAINS = {"gmail.com", "hotmail.com", "firma.com.tr", "example.org", "itu.edu.tr"};
+
+    private final Random random;
+
+    public SyntheticRoster(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SyntheticRoster <rows> [<out.csv>] [--seed <n>]");
+            System.exit(1);
+        }
+        int rows = Integer.parseInt(args[0]);
+        String out = null;
+        long seed = 42;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                out = args[i];
+            }
+        }
+        byte[] csv = new SyntheticRoster(seed).csv(rows);
+        if (out == null) {
+            System.out.write(csv);
+            System.out.flush();
+        } else {
+            Files.write(Path.of(out), csv);
+            System.out.println("Wrote " + rows + " rows (" + csv.length + " bytes) to " + out);
+        }
+    }
+
+    /** A full roster CSV with header, UTF-8 encoded. */
+    public byte[] csv(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 80).append("Name,LinkedIn,Company\n");
+        for (int i = 0; i < rows; i++) {
+            Attendee attendee = nextAttendee();
+            String contact = random.nextInt(100) == 0 ? "" : attendee.getLinkedin();
+            sb.append(attendee.getNameSurname()).append(',').append(contact).append(',')
+                    .append(attendee.getCompany()).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Attendee nextAttendee() {
+        String name;
+        String surname;
+        if (random.nextInt(20) == 0) {
+            String[] parts = pick(LONG_NAMES).split(" ", 2);
+            name = parts[0];
+            surname = parts[1];
+        } else {
+            name = pick(FIRST_NAMES);
+            surname = random.nextInt(8) == 0 ? pick(SURNAMES) + " " + pick(SURNAMES) : pick(SURNAMES);
+        }
+        String company = random.nextInt(10) == 0 ? "" : pick(COMPANIES);
+        return new Attendee(name, surname, contact(name, surname), company);
+    }
+
+    private String contact(String name, String surname) {
+        String handle = asciiSlug(name + " " + surname) + (random.nextBoolean() ? "" : "-" + random.nextInt(1000));
+        int form = random.nextInt(100);
+        if (form < 25) {
+            return handle;
+        } else if (form < 35) {
+            return random.nextBoolean() ? "in/" + handle : "/in/" + handle + "/";
+        } else if (form < 60) {
+            return "https://www.linkedin.com/in/" + handle + "/";
+        } else if (form < 70) {
+            return "https://tr.linkedin.com/in/" + handle + "?trk=public_profile_browsemap";
+        } else if (form < 75) {
+            return "linkedin.com/in/" + handle;
+        } else if (form < 78) {
+            return "https://www.linkedin.com/mwlite/in/" + handle;
+        } else if (form < 98) {
+            return handle.replace('-', '.') + "@" + pick(EMAIL_DOMAINS);
+        } else {
+            return "<" + handle.replace('-', '.') + "@" + pick(EMAIL_DOMAINS) + ">";
+        }
+    }
+
+    /** "Çağla Öztürk" -> "cagla-ozturk"; LinkedIn handles are ASCII. */
+    private static String asciiSlug(String fullName) {
+        StringBuilder sb = new StringBuilder(fullName.length());
+        for (char c : fullName.toLowerCase(Locale.ROOT).toCharArray()) {
+            switch (c) {
+                case 'ç' -> sb.append('c');
+                case 'ğ' -> sb.append('g');
+                case 'ı', 'i', 'í' -> sb.append('i');
+                case 'ö', 'ø', 'ó' -> sb.append('o');
+                case 'ş' -> sb.append('s');
+                case 'ü', 'ú' -> sb.append('u');
+                case 'é', 'ë' -> sb.append('e');
+                case 'á' -> sb.append('a');
+                case ' ', '-' -> sb.append('-');
+                default -> {
+                    if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
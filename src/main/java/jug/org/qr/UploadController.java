@@ -0,0 +1,144 @@
+package jug.org.qr;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Chunked, resumable roster uploads for large files and flaky connections:
+ *
+ * 1. {@code POST /uploads?size=N} opens an upload.
+ * 2. {@code PUT /uploads/{id}?offset=N} appends a chunk (raw bytes). After a failed chunk,
+ *    {@code GET /uploads/{id}} tells where to resume.
+ * 3. {@code POST /uploads/{id}/generate} renders the roster and answers with the download URL.
+ *    It may be sent right after step 1; it waits for the last chunk, because the same roster
+ *    uploaded again is deduplicated by its content ({@link RecentBatches}) like a plain upload.
+ */
+@Controller
+public class UploadController {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    @Autowired
+    private BadgeService badgeService;
+
+    @Autowired
+    private ResultStore resultStore;
+
+    @Autowired
+    private ProgressRegistry progressRegistry;
+
+    @Autowired
+    private UploadSessions uploadSessions;
+
+    @Autowired
+    private RecentBatches recentBatches;
+
+    @Autowired
+    private RenderCancellations renderCancellations;
+
+    public record UploadStatus(String uploadId, long size, long received, boolean complete, int chunkSize) {
+        static UploadStatus of(UploadSession session) {
+            return new UploadStatus(session.getId(), session.getSize(), session.getReceived(), session.isComplete(), CHUNK_SIZE);
+        }
+    }
+
+    @PostMapping("/uploads")
+    @ResponseBody
+    public ResponseEntity<?> createUpload(@RequestParam("size") long size) throws IOException {
+        try {
+            UploadSession session = uploadSessions.create(size);
+            return ResponseEntity.status(HttpStatus.CREATED).body(UploadStatus.of(session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    @ResponseBody
+    public ResponseEntity<?> uploadStatus(@PathVariable String uploadId) {
+        UploadSession session = uploadSessions.get(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(UploadStatus.of(session));
+    }
+
+    @PutMapping("/uploads/{uploadId}")
+    @ResponseBody
+    public ResponseEntity<?> appendChunk(@PathVariable String uploadId,
+                                         @RequestParam("offset") long offset,
+                                         HttpServletRequest request) {
+        UploadSession session = uploadSessions.get(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream chunk = request.getInputStream()) {
+            session.append(offset, chunk);
+            return ResponseEntity.ok(UploadStatus.of(session));
+        } catch (IllegalStateException e) {
+            // Wrong offset or a chunk already in flight: the status says where to continue.
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(UploadStatus.of(session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            // Connection dropped mid-chunk; what arrived is kept.
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(UploadStatus.of(session));
+        }
+    }
+
+    @PostMapping("/uploads/{uploadId}/generate")
+    @ResponseBody
+    public ResponseEntity<?> generate(@PathVariable String uploadId,
+                                      @RequestParam(value = "format", defaultValue = "labels") String format,
+                                      @RequestParam(value = "layout", required = false) String layout,
+                                      @RequestParam(value = "progressId", required = false) String progressId) {
+        UploadSession session = uploadSessions.get(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean badges = format.equals("badges");
+        String layoutName = layout != null ? layout : badges ? LayoutPlans.BADGE_80X80 : LayoutPlans.LABEL_80X50;
+        GenerationProgress progress = progressRegistry.track(progressId);
+        try {
+            String key;
+            try (InputStream upload = session.openStream()) {
+                key = recentBatches.key(upload, layoutName, badgeService.getOutputVersion(layoutName));
+            }
+            RecentBatches.Result result = recentBatches.render(key, progress, () -> resultStore.write(out -> {
+                try (InputStream csv = session.openStream()) {
+                    badgeService.generateBatch(csv, layoutName, progress, out, key);
+                }
+            }));
+            if (result.reused()) {
+                try (InputStream csv = session.openStream()) {
+                    badgeService.indexRoster(csv);
+                }
+            }
+            progress.done();
+            uploadSessions.discard(session);
+
+            String downloadUrl = "/download?fileId=" + result.fileId() + (badges ? "" : "&filename=labels_80x50.pdf");
+            return ResponseEntity.ok(Map.of("downloadUrl", downloadUrl));
+        } catch (Exception e) {
+            progress.failed(e.getMessage());
+            renderCancellations.record("/uploads/generate", e);
+            String message = e.getMessage() != null && e.getMessage().contains("No valid attendees found")
+                    ? "No valid rows found in the CSV file. Please check its columns."
+                    : "Error: " + e.getMessage();
+            return ResponseEntity.badRequest().body(Map.of("error", message));
+        }
+    }
+}
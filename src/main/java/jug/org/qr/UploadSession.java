@@ -0,0 +1,179 @@
+package jug.org.qr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One resumable upload: a spool file of a size announced up front, filled by chunks in order.
+ * A chunk that breaks off halfway keeps the bytes that arrived; the client asks for
+ * {@link #getReceived()} and resends from there.
+ *
+ * {@link #openStream()} can be read while chunks are still arriving: it blocks for bytes that
+ * are not there yet, and fails if no chunk arrives within the stall timeout.
+ */
+public class UploadSession {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String id;
+    private final Path file;
+    private final long size;
+    private final long stallTimeoutMillis;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Guarded by this; readers wait on it for more bytes.
+    private long received;
+    private boolean discarded;
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    UploadSession(String id, Path file, long size, long stallTimeoutMillis) {
+        this.id = id;
+        this.file = file;
+        this.size = size;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    public synchronized boolean isComplete() {
+        return received == size;
+    }
+
+    long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    /**
+     * Appends a chunk that starts at {@code offset} and returns the bytes received so far.
+     * Throws IllegalStateException if the offset is not the current end of the upload or
+     * another chunk is still being written, and IllegalArgumentException if the chunk runs past
+     * the announced size.
+     */
+    public long append(long offset, InputStream chunk) throws IOException {
+        if (!writeLock.tryLock()) {
+            throw new IllegalStateException("Another chunk is still being written");
+        }
+        try {
+            synchronized (this) {
+                if (discarded) {
+                    throw new IllegalStateException("Upload was discarded");
+                }
+                if (offset != received) {
+                    throw new IllegalStateException("Expected offset " + received + " but got " + offset);
+                }
+            }
+            lastActivityMillis = System.currentTimeMillis();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                long position = offset;
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = chunk.read(buffer)) != -1) {
+                    if (position + n > size) {
+                        throw new IllegalArgumentException("Chunk runs past the announced size of " + size + " bytes");
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, n);
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                    // Publish every buffer, so a reader can render while the chunk is still arriving.
+                    synchronized (this) {
+                        received = position;
+                        notifyAll();
+                    }
+                    lastActivityMillis = System.currentTimeMillis();
+                }
+                return position;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Reads the upload from the start, waiting for bytes that have not arrived yet. */
+    public InputStream openStream() throws IOException {
+        return new SpoolInputStream(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    void discard() throws IOException {
+        synchronized (this) {
+            discarded = true;
+            notifyAll();
+        }
+        Files.deleteIfExists(file);
+    }
+
+    /** Blocks until more than {@code position} bytes have arrived or the upload is complete. */
+    private synchronized long awaitBytesBeyond(long position) throws IOException {
+        while (received <= position && received < size) {
+            if (discarded) {
+                throw new IOException("Upload " + id + " was discarded");
+            }
+            long waitMillis = lastActivityMillis + stallTimeoutMillis - System.currentTimeMillis();
+            if (waitMillis <= 0) {
+                throw new IOException("Upload stalled: no data for "
+                        + TimeUnit.MILLISECONDS.toSeconds(stallTimeoutMillis) + " s at " + received + " of " + size + " bytes");
+            }
+            try {
+                wait(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for upload " + id, e);
+            }
+        }
+        return received;
+    }
+
+    private final class SpoolInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        SpoolInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            long available = awaitBytesBeyond(position);
+            if (available <= position) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, available - position);
+            int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
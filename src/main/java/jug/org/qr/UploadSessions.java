@@ -0,0 +1,82 @@
+package jug.org.qr;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable chunked uploads, spooled to {@code badgeqr.upload.dir} (a temp directory by default).
+ * Sessions live on the instance that created them.
+ */
+@Component
+public class UploadSessions {
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    @Value("${badgeqr.upload.dir:}")
+    private String dir;
+
+    @Value("${badgeqr.upload.max-size-mb:200}")
+    private long maxSizeMb;
+
+    @Value("${badgeqr.upload.stall-timeout-seconds:120}")
+    private long stallTimeoutSeconds;
+
+    @Value("${badgeqr.upload.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Path spoolDir;
+    private final ConcurrentHashMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        spoolDir = dir.isBlank() ? Files.createTempDirectory("badgeqr-uploads") : Files.createDirectories(Path.of(dir));
+    }
+
+    public UploadSession create(long size) throws IOException {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        if (size <= 0 || size > maxBytes) {
+            throw new IllegalArgumentException("Upload size must be between 1 byte and " + maxSizeMb + " MB");
+        }
+        String id = UUID.randomUUID().toString();
+        Path file = Files.createFile(spoolDir.resolve(id + ".csv"));
+        UploadSession session = new UploadSession(id, file, size, TimeUnit.SECONDS.toMillis(stallTimeoutSeconds));
+        sessions.put(id, session);
+        return session;
+    }
+
+    /** Returns the session, or null for unknown or malformed ids. */
+    public UploadSession get(String uploadId) {
+        if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+            return null;
+        }
+        return sessions.get(uploadId);
+    }
+
+    public void discard(UploadSession session) {
+        sessions.remove(session.getId(), session);
+        try {
+            session.discard();
+        } catch (IOException e) {
+            System.err.println("Could not delete upload " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /** Drops sessions that saw no chunk within the TTL, finished or not. */
+    public void sweepExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ttlMinutes);
+        for (UploadSession session : sessions.values()) {
+            if (session.getLastActivityMillis() < cutoff) {
+                discard(session);
+            }
+        }
+    }
+}
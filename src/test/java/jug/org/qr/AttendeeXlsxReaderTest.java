@@ -0,0 +1,175 @@
+package jug.org.qr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Reads small workbooks written here entry by entry, shaped like the ones Excel, LibreOffice and
+ * export libraries produce.
+ */
+class AttendeeXlsxReaderTest {
+
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSharedStrings() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/sharedStrings.xml", "<sst xmlns=\"" + MAIN_NS + "\">"
+                + "<si><t>Name</t></si><si><t>LinkedIn</t></si><si><t>Company</t></si>"
+                // Rich text runs are joined; the phonetic reading is left out.
+                + "<si><r><t>Ayşe </t></r><r><t>Yılmaz</t></r><rPh sb=\"0\" eb=\"4\"><t>アイシェ</t></rPh></si>"
+                + "<si><t>in/ayse</t></si><si><t xml:space=\"preserve\"> ACME </t></si>"
+                + "</sst>");
+        entries.put("xl/worksheets/sheet1.xml", sheet(
+                "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"B1\" t=\"s\"><v>1</v></c><c r=\"C1\" t=\"s\"><v>2</v></c></row>"
+                        + "<row r=\"2\"><c r=\"A2\" t=\"s\"><v>3</v></c><c r=\"B2\" t=\"s\"><v>4</v></c><c r=\"C2\" t=\"s\"><v>5</v></c></row>"
+                        + "<row r=\"3\"><c r=\"A3\" t=\"s\"><v>3</v></c><c r=\"C3\" t=\"s\"><v>5</v></c></row>"));
+
+        List<Attendee> attendees = read(workbook(entries));
+
+        assertEquals(1, attendees.size());
+        assertEquals("Ayşe", attendees.get(0).getName());
+        assertEquals("Yılmaz", attendees.get(0).getSurname());
+        assertEquals("in/ayse", attendees.get(0).getLinkedin());
+        assertEquals("ACME", attendees.get(0).getCompany());
+    }
+
+    @Test
+    void readsInlineStringsAndPlainValues() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/worksheets/sheet1.xml", sheet(
+                "<row r=\"1\">" + inline("A1", "Name") + inline("B1", "LinkedIn") + inline("C1", "Company") + "</row>"
+                        + "<row r=\"2\">" + inline("A2", "Mehmet Kaya") + inline("B2", "someone@example.com")
+                        + "<c r=\"C2\"><v>1907</v></c></row>"
+                        + "<row r=\"3\">" + inline("A3", "Ali Veli") + "<c r=\"B3\" t=\"str\"><f>B2</f><v>in/ali</v></c>"
+                        + "<c r=\"C3\" t=\"b\"><v>1</v></c></row>"));
+
+        List<Attendee> attendees = read(workbook(entries));
+
+        assertEquals(2, attendees.size());
+        assertEquals("Mehmet Kaya", attendees.get(0).getNameSurname());
+        assertEquals("someone@example.com", attendees.get(0).getLinkedin());
+        assertEquals("1907", attendees.get(0).getCompany());
+        assertEquals("in/ali", attendees.get(1).getLinkedin());
+        assertEquals("TRUE", attendees.get(1).getCompany());
+    }
+
+    @Test
+    void cellsWithoutReferencesFollowOneAnother() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/worksheets/sheet1.xml", sheet(
+                "<row>" + inline(null, "Name") + inline(null, "LinkedIn") + inline(null, "Company") + "</row>"
+                        + "<row>" + inline(null, "Zeynep Aykaya") + inline(null, "in/zeynep") + inline(null, "Globex") + "</row>"
+                        // A reference skips ahead; the cell after it continues from there.
+                        + "<row>" + inline(null, "Seán O'Brien") + inline("C3", "ACME") + inline(null, "ignored") + "</row>"
+                        + "<row>" + inline("B4", "in/sean") + inline(null, "Initech") + "</row>"
+                        + "<row>" + inline("A5", "Can Demir") + inline(null, "in/can") + inline("E5", "past the columns") + "</row>"));
+
+        List<Attendee> attendees = read(workbook(entries));
+
+        assertEquals(2, attendees.size());
+        assertEquals("Zeynep Aykaya", attendees.get(0).getNameSurname());
+        assertEquals("in/zeynep", attendees.get(0).getLinkedin());
+        assertEquals("Globex", attendees.get(0).getCompany());
+        assertEquals("Can Demir", attendees.get(1).getNameSurname());
+        assertEquals("in/can", attendees.get(1).getLinkedin());
+        assertEquals("", attendees.get(1).getCompany());
+    }
+
+    @Test
+    void readsTheSheetTheWorkbookListsFirst() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/workbook.xml", "<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\""
+                + "http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>"
+                + "<sheet name=\"Roster\" sheetId=\"2\" r:id=\"rId7\"/><sheet name=\"Old\" sheetId=\"1\" r:id=\"rId1\"/>"
+                + "</sheets></workbook>");
+        entries.put("xl/_rels/workbook.xml.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                + "<Relationship Id=\"rId7\" Type=\"worksheet\" Target=\"/xl/worksheets/roster.xml\"/>"
+                + "</Relationships>");
+        entries.put("xl/worksheets/sheet1.xml", sheet(headerRow() + "<row>" + inline(null, "Old Row") + inline(null, "in/old") + "</row>"));
+        entries.put("xl/worksheets/roster.xml", sheet(headerRow() + "<row>" + inline(null, "New Row") + inline(null, "in/new") + "</row>"));
+
+        List<Attendee> attendees = read(workbook(entries));
+
+        assertEquals(1, attendees.size());
+        assertEquals("New Row", attendees.get(0).getNameSurname());
+    }
+
+    @Test
+    void fallsBackToSheetOneWithoutRelationships() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/workbook.xml", "<workbook xmlns=\"" + MAIN_NS + "\"><sheets><sheet name=\"Sheet1\" sheetId=\"1\"/></sheets></workbook>");
+        entries.put("xl/worksheets/sheet1.xml", sheet(headerRow() + "<row>" + inline(null, "Only Row") + inline(null, "in/only") + "</row>"));
+
+        assertEquals("Only Row", read(workbook(entries)).get(0).getNameSurname());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotWorkbooks() throws IOException {
+        Path csv = dir.resolve("roster.xlsx");
+        Files.writeString(csv, "Name,LinkedIn,Company\n");
+        assertThrows(IllegalArgumentException.class, () -> read(csv));
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("xl/worksheets/sheet1.xml", sheet(headerRow()));
+        entries.put("xl/workbook.xml", null);
+        assertThrows(IllegalArgumentException.class, () -> read(workbook(entries)));
+    }
+
+    private Path workbook(Map<String, String> entries) throws IOException {
+        Map<String, String> all = new LinkedHashMap<>();
+        all.put("[Content_Types].xml", "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\"/>");
+        all.put("xl/workbook.xml", "<workbook xmlns=\"" + MAIN_NS + "\"/>");
+        all.putAll(entries);
+        Path workbook = Files.createTempFile(dir, "roster", ".xlsx");
+        try (OutputStream file = Files.newOutputStream(workbook); ZipOutputStream zip = new ZipOutputStream(file)) {
+            for (Map.Entry<String, String> entry : all.entrySet()) {
+                if (entry.getValue() != null) {
+                    zip.putNextEntry(new ZipEntry(entry.getKey()));
+                    zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                }
+            }
+        }
+        return workbook;
+    }
+
+    private static List<Attendee> read(Path workbook) throws IOException {
+        List<Attendee> attendees = new ArrayList<>();
+        try (AttendeeXlsxReader reader = new AttendeeXlsxReader(workbook, new GenerationProgress())) {
+            reader.forEachRemaining(attendees::add);
+        }
+        return attendees;
+    }
+
+    private static String sheet(String rows) {
+        return "<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>" + rows + "</sheetData></worksheet>";
+    }
+
+    private static String headerRow() {
+        return "<row>" + inline(null, "Name") + inline(null, "LinkedIn") + inline(null, "Company") + "</row>";
+    }
+
+    private static String inline(String ref, String text) {
+        return "<c" + (ref != null ? " r=\"" + ref + "\"" : "") + " t=\"inlineStr\"><is><t>" + text + "</t></is></c>";
+    }
+}
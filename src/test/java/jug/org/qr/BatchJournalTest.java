@@ -0,0 +1,138 @@
+package jug.org.qr;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchJournalTest {
+
+    private static final String KEY = "0123456789abcdef".repeat(4);
+    private static final String LAYOUT = LayoutPlans.LABEL_80X50;
+
+    @TempDir
+    Path dir;
+
+    private BatchJournal journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = journal(100);
+    }
+
+    @Test
+    void resumesFromTheLastCommittedSegment() throws IOException {
+        BatchJournal.Job job = journal.open(KEY, LAYOUT, "v1");
+        assertEquals(0, job.checkpoint());
+        commit(job, 0, 100);
+        commit(job, 1, 100);
+        // Cut short while writing the third segment.
+        Files.writeString(job.pendingSegment(2), "%PDF-partial");
+
+        BatchJournal.Job resumed = journal(100).open(KEY, LAYOUT, "v1");
+
+        assertEquals(2, resumed.segments());
+        assertEquals(200, resumed.checkpoint());
+        assertTrue(Files.exists(resumed.segment(0)));
+        assertTrue(Files.exists(resumed.segment(1)));
+        commit(resumed, 2, 37);
+        assertEquals(237, resumed.checkpoint());
+    }
+
+    @Test
+    void startsOverWhenTheOutputVersionChanged() throws IOException {
+        commit(journal.open(KEY, LAYOUT, "v1"), 0, 100);
+
+        BatchJournal.Job job = journal.open(KEY, LAYOUT, "v2");
+
+        assertEquals(0, job.segments());
+        assertEquals(0, job.checkpoint());
+        assertFalse(Files.exists(job.segment(0)));
+    }
+
+    @Test
+    void startsOverWhenTheSegmentSizeOrLayoutChanged() throws IOException {
+        commit(journal.open(KEY, LAYOUT, "v1"), 0, 100);
+        assertEquals(0, journal(50).open(KEY, LAYOUT, "v1").checkpoint());
+
+        commit(journal.open(KEY, LAYOUT, "v1"), 0, 100);
+        assertEquals(0, journal.open(KEY, LayoutPlans.BADGE_80X80, "v1").checkpoint());
+    }
+
+    @Test
+    void startsOverWhenASegmentFileIsGone() throws IOException {
+        BatchJournal.Job job = journal.open(KEY, LAYOUT, "v1");
+        commit(job, 0, 100);
+        commit(job, 1, 100);
+        Files.delete(job.segment(1));
+
+        BatchJournal.Job restarted = journal.open(KEY, LAYOUT, "v1");
+
+        assertEquals(0, restarted.checkpoint());
+        assertFalse(Files.exists(restarted.segment(0)));
+    }
+
+    @Test
+    void rejectsSegmentsCommittedOutOfOrder() throws IOException {
+        BatchJournal.Job job = journal.open(KEY, LAYOUT, "v1");
+        Files.writeString(job.pendingSegment(1), "%PDF");
+
+        assertThrows(IllegalStateException.class, () -> job.commitSegment(1, 100));
+        assertEquals(0, job.checkpoint());
+
+        commit(job, 0, 100);
+        assertThrows(IllegalStateException.class, () -> job.commitSegment(0, 100));
+        assertEquals(100, job.checkpoint());
+    }
+
+    @Test
+    void rejectsKeysThatAreNotDigests() {
+        assertThrows(IllegalArgumentException.class, () -> journal.open("../" + KEY.substring(3), LAYOUT, "v1"));
+    }
+
+    @Test
+    void isOffWithoutASegmentSize() throws IOException {
+        assertTrue(journal.isEnabled());
+        assertFalse(journal(0).isEnabled());
+    }
+
+    @Test
+    void sweepDropsJobsIdlePastTheTtl() throws IOException {
+        BatchJournal.Job job = journal.open(KEY, LAYOUT, "v1");
+        commit(job, 0, 100);
+        Path jobDirectory = job.segment(0).getParent();
+
+        journal.sweepExpired();
+        assertTrue(Files.exists(jobDirectory));
+
+        Files.setLastModifiedTime(jobDirectory, FileTime.from(Instant.now().minus(25, ChronoUnit.HOURS)));
+        journal.sweepExpired();
+        assertFalse(Files.exists(jobDirectory));
+    }
+
+    private BatchJournal journal(int segmentPages) throws IOException {
+        BatchJournal journal = new BatchJournal();
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentPages", segmentPages);
+        ReflectionTestUtils.setField(journal, "ttlHours", 24L);
+        journal.init();
+        return journal;
+    }
+
+    private static void commit(BatchJournal.Job job, int number, int pages) throws IOException {
+        Files.writeString(job.pendingSegment(number), "%PDF segment " + number);
+        job.commitSegment(number, pages);
+    }
+}
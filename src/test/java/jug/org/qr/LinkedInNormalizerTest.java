@@ -0,0 +1,204 @@
+package jug.org.qr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the single-pass scanners in {@link LinkedInNormalizer} against the regex implementation
+ * they replaced, kept below as {@link RegexOracle}, over edge cases and generated inputs.
+ */
+class LinkedInNormalizerTest {
+
+    private static final List<String> EDGE_CASES = List.of(
+            "", " ", "\t\n", "altuga", "Altuga", "ab", "abc", "a-b", "-abc", "abc-", "a".repeat(100), "a".repeat(101),
+            "@altuga", "@@altuga", "altuga/", "altuga//", "<altuga>", "<>", "< altuga >", "alt uga",
+            "in/altuga", "/in/altuga", "IN/Altuga", "in/altuga/", "in/altuga//", "in/altuga/\n", "in/altuga/\r\n",
+            "in/altuga/\u0085", "in/altuga/\u2028", "in/altuga\n", "in/", "/in/", "in//altuga", "in/altuga?x=1",
+            "in/altuga#top", "in/@altuga", "in/ altuga", "//in/altuga",
+            "https://www.linkedin.com/in/altuga", "https://www.linkedin.com/in/altuga/", "http://linkedin.com/in/altuga",
+            "linkedin.com/in/altuga", "www.linkedin.com/in/altuga", "LINKEDIN.COM/IN/ALTUGA", "tr.linkedin.com/in/altuga",
+            "https://www.linkedin.com/in/altuga?trk=profile", "https://www.linkedin.com/in/altuga#about",
+            "https://www.linkedin.com/mwlite/in/altuga", "https://www.linkedin.com/mwlite/in/", "linkedin.com/mwlite/in//x",
+            "https://www.linkedin.com/in/", "https://www.linkedin.com/in//altuga", "https://www.linkedin.com/company/x",
+            "linkedin.com/in/a linkedin.com/in/b", "linkedin.com/linkedin.com/in/x", "xlinkedin.com/in/abc",
+            "https://www.linkedin.com/in/%C3%A7a%C4%9Fr%C4%B1", "https://www.linkedin.com/in/çağrı", "linkedın.com/in/abc",
+            "LİNKEDİN.COM/İN/abc", "LINKED\u212AN.COM/in/abc", "linkedin.com/\u0130n/abc",
+            "someone@example.com", "some one@example.com", "someone@example", "someone@.com", "someone@example.",
+            "@example.com", "a@b.c", "a@b@c.d", "a@.b.c", "a@b..c", "a@b.c\t", "mailto:a@b.c", "a@b\u00a0.c",
+            "https://example.com", "HTTP://EXAMPLE.COM", "https://example.com/page?x#y", "ftp://example.com",
+            "https://", "http:/example.com", "example.com", "not a handle!", "çağrı", "ab\u00a0cd", "\u00a0altuga\u00a0");
+
+    private static final String[] FRAGMENTS = {
+            "https://", "http://", "HTTPS://", "www.", "tr.", "linkedin.com/", "LinkedIn.com/", "LINKEDIN.COM/",
+            "linkedin.co/", "mwlite/", "MWLite/", "in/", "IN/", "In/", "/", "//", "?", "#", "@", ".", "-", "_", ":",
+            " ", "  ", "\t", "\n", "\r", "\u000b", "\f", "\u0085", "\u2028", "\u00a0", "<", ">", "a", "b", "Z", "0", "9",
+            "altuga", "x-y", "çağrı", "ı", "İ", "\u212a", "é", "example", "com", "mailto:"};
+
+    @Test
+    void edgeCasesMatchRegexImplementation() {
+        for (String input : EDGE_CASES) {
+            assertSameAsOracle(input);
+        }
+        assertSameAsOracle(null);
+    }
+
+    @Test
+    void generatedInputsMatchRegexImplementation() {
+        Random random = new Random(26);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            input.setLength(0);
+            int parts = 1 + random.nextInt(8);
+            for (int p = 0; p < parts; p++) {
+                if (random.nextInt(4) == 0) {
+                    // Single arbitrary characters reach what the fragments do not, surrogates included.
+                    input.append((char) random.nextInt(0x3000));
+                } else {
+                    input.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                }
+            }
+            assertSameAsOracle(input.toString());
+        }
+    }
+
+    @Test
+    void extractHandleLowerCasesTheProfileHandle() {
+        assertEquals("altuga", LinkedInNormalizer.extractHandle("In/Altuga/"));
+        assertEquals("altuga", LinkedInNormalizer.extractHandle("https://www.linkedin.com/in/ALTUGA?trk=x"));
+        assertEquals("", LinkedInNormalizer.extractHandle("someone@example.com"));
+    }
+
+    private static void assertSameAsOracle(String input) {
+        String shown = input == null ? "null" : '"' + input.replace("\n", "\\n").replace("\r", "\\r") + '"';
+        assertEquals(RegexOracle.normalizeLinkedInProfileUrl(input), LinkedInNormalizer.normalizeLinkedInProfileUrl(input),
+                () -> "normalizeLinkedInProfileUrl(" + shown + ")");
+        // Twice: the second call is answered from the memo.
+        for (int i = 0; i < 2; i++) {
+            assertEquals(RegexOracle.normalizeToQrPayload(input), LinkedInNormalizer.normalizeToQrPayload(input),
+                    () -> "normalizeToQrPayload(" + shown + ")");
+        }
+    }
+
+    /** LinkedInNormalizer as it was before the scanners, unchanged apart from the class name. */
+    private static final class RegexOracle {
+
+        private static final Pattern LINKEDIN_IN_URL = Pattern.compile(
+                "(?i)(?:https?://)?(?:[a-z0-9-]+\\.)?linkedin\\.com/(?:mwlite/)?in/([^/?#]+)"
+        );
+        private static final Pattern LINKEDIN_IN_SUFFIX = Pattern.compile("(?i)^(?:/)?in/([^/?#]+)(?:/)?$");
+        private static final Pattern LINKEDIN_HANDLE = Pattern.compile("^[A-Za-z0-9][A-Za-z0-9-]{2,99}$");
+        private static final Pattern EMAIL_LIKE = Pattern.compile("^[^\\s@]+@[^\\s@]+\\.[^\\s@]+$");
+
+        static String normalizeLinkedInProfileUrl(String raw) {
+            String input = safeTrim(raw);
+            if (input.isEmpty()) {
+                return "";
+            }
+
+            input = stripQueryAndFragment(input);
+
+            Matcher urlMatcher = LINKEDIN_IN_URL.matcher(input);
+            if (urlMatcher.find()) {
+                String handle = cleanHandle(urlMatcher.group(1));
+                if (!handle.isEmpty()) {
+                    return canonicalProfileUrl(handle);
+                }
+            }
+
+            Matcher suffixMatcher = LINKEDIN_IN_SUFFIX.matcher(input);
+            if (suffixMatcher.find()) {
+                String handle = cleanHandle(suffixMatcher.group(1));
+                if (!handle.isEmpty()) {
+                    return canonicalProfileUrl(handle);
+                }
+            }
+
+            String candidate = cleanHandle(input);
+            if (LINKEDIN_HANDLE.matcher(candidate).matches()) {
+                return canonicalProfileUrl(candidate);
+            }
+
+            return "";
+        }
+
+        static String normalizeToQrPayload(String raw) {
+            String input = safeTrim(raw);
+            if (input.isEmpty()) {
+                return "";
+            }
+
+            String linkedIn = normalizeLinkedInProfileUrl(input);
+            if (!linkedIn.isEmpty()) {
+                return linkedIn;
+            }
+
+            if (EMAIL_LIKE.matcher(input).matches()) {
+                return "mailto:" + input;
+            }
+
+            String stripped = stripQueryAndFragment(input);
+            if (startsWithHttpScheme(stripped)) {
+                return stripped;
+            }
+
+            return "";
+        }
+
+        private static boolean startsWithHttpScheme(String value) {
+            String lower = value.toLowerCase();
+            return lower.startsWith("http://") || lower.startsWith("https://");
+        }
+
+        private static String canonicalProfileUrl(String handle) {
+            return "https://www.linkedin.com/in/" + handle + "/";
+        }
+
+        private static String cleanHandle(String handle) {
+            String h = safeTrim(handle);
+            if (h.startsWith("@")) {
+                h = h.substring(1);
+            }
+            while (h.endsWith("/")) {
+                h = h.substring(0, h.length() - 1);
+            }
+            return h;
+        }
+
+        private static String stripQueryAndFragment(String input) {
+            int q = input.indexOf('?');
+            int hash = input.indexOf('#');
+            int cut;
+            if (q == -1 && hash == -1) {
+                cut = -1;
+            } else if (q == -1) {
+                cut = hash;
+            } else if (hash == -1) {
+                cut = q;
+            } else {
+                cut = Math.min(q, hash);
+            }
+            if (cut == -1) {
+                return input;
+            }
+            return input.substring(0, cut);
+        }
+
+        private static String safeTrim(String s) {
+            if (s == null) {
+                return "";
+            }
+            String trimmed = s.trim();
+            if (trimmed.startsWith("<") && trimmed.endsWith(">") && trimmed.length() > 2) {
+                trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+            }
+            trimmed = trimmed.replaceAll("\\s+", " ");
+            return trimmed;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package jug.org.qr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RosterIndexTest {
+
+    private static final List<Attendee> ROSTER = List.of(
+            new Attendee("Zeynep", "Aykaya", "https://www.linkedin.com/in/zeynep-aykaya/", "Globex"),
+            new Attendee("Mehmet", "Kaya", "someone@example.com", "ACME"),
+            new Attendee("Ayşe", "Yılmaz", "in/ayse", "Kayak Tours"),
+            new Attendee("Seán", "O'Brien", "", "ACME"));
+
+    @Test
+    void foldDropsAccentsCaseAndApostrophes() {
+        assertEquals("cagla ozturk", RosterIndex.fold("Çağla Öztürk"));
+        assertEquals("ayse yilmaz", RosterIndex.fold("AYŞE Yılmaz"));
+        assertEquals("obrien", RosterIndex.fold("O'Brien"));
+        assertEquals("aegir strasse lodz oslo", RosterIndex.fold("Ægir Straße Łódź Øslo"));
+        assertEquals("a b someone@example.com", RosterIndex.fold("a/b someone@example.com"));
+        assertEquals("", RosterIndex.fold(null));
+    }
+
+    @Test
+    void prefixMatchesRankBeforeSubstringMatches() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        // kaya prefixes "kaya" (row 1) and "kayak" (row 2), and is inside "aykaya" (row 0).
+        RosterIndex.Hits hits = roster.search("kaya", 10);
+        assertArrayEquals(new int[]{1, 2, 0}, hits.rows());
+        assertEquals(3, hits.total());
+    }
+
+    @Test
+    void shortWordsOnlyMatchAsPrefixes() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        assertArrayEquals(new int[]{0, 2}, roster.search("ay", 10).rows());
+        assertArrayEquals(new int[0], roster.search("ya", 10).rows());
+    }
+
+    @Test
+    void trigramsFindSubstringsOfAtLeastThreeCharacters() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        assertArrayEquals(new int[]{0}, roster.search("yka", 10).rows());
+        assertArrayEquals(new int[]{3}, roster.search("brie", 10).rows());
+        // Every trigram of "kayka" occurs in "aykaya", but not in this order.
+        assertEquals(0, roster.search("kayka", 10).total());
+    }
+
+    @Test
+    void everyWordMustMatch() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        assertArrayEquals(new int[]{2}, roster.search("ayse yil", 10).rows());
+        assertArrayEquals(new int[]{1}, roster.search("acme meh", 10).rows());
+        assertEquals(0, roster.search("ayse acme", 10).total());
+        assertEquals(0, roster.search("  ", 10).total());
+    }
+
+    @Test
+    void searchesFoldedTextHandlesAndEmails() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        assertArrayEquals(new int[]{2}, roster.search("AYŞE", 10).rows());
+        assertArrayEquals(new int[]{3}, roster.search("sean obrien", 10).rows());
+        assertArrayEquals(new int[]{0}, roster.search("linkedin.com/in/zeynep-aykaya", 10).rows());
+        assertArrayEquals(new int[]{1}, roster.search("someone@example.com", 10).rows());
+    }
+
+    @Test
+    void limitCutsRowsButNotTotal() {
+        RosterIndex.Hits hits = index(ROSTER).search("acme", 1);
+        assertArrayEquals(new int[]{1}, hits.rows());
+        assertEquals(2, hits.total());
+    }
+
+    @Test
+    void rowsReadBackAsUploaded() {
+        RosterIndex.Snapshot roster = index(ROSTER);
+
+        assertEquals(ROSTER.size(), roster.size());
+        for (int row = 0; row < ROSTER.size(); row++) {
+            Attendee attendee = roster.attendee(row);
+            assertEquals(ROSTER.get(row).getNameSurname(), attendee.getNameSurname());
+            assertEquals(ROSTER.get(row).getCompany(), attendee.getCompany());
+            assertEquals(ROSTER.get(row).getLinkedin(), attendee.getLinkedin());
+        }
+    }
+
+    @Test
+    void publishReplacesTheCurrentRosterWithANewVersion() {
+        RosterIndex rosterIndex = new RosterIndex();
+        assertNull(rosterIndex.current());
+
+        RosterIndex.Builder first = rosterIndex.newBuilder();
+        ROSTER.forEach(first::add);
+        rosterIndex.publish(first);
+        RosterIndex.Snapshot published = rosterIndex.current();
+
+        RosterIndex.Builder second = rosterIndex.newBuilder();
+        second.indexing(ROSTER.subList(0, 1).iterator()).forEachRemaining(attendee -> { });
+        rosterIndex.publish(second);
+
+        assertEquals(published.version() + 1, rosterIndex.current().version());
+        assertEquals(1, rosterIndex.current().size());
+        assertEquals(ROSTER.size(), published.size());
+    }
+
+    private static RosterIndex.Snapshot index(List<Attendee> attendees) {
+        RosterIndex rosterIndex = new RosterIndex();
+        RosterIndex.Builder builder = rosterIndex.newBuilder();
+        attendees.forEach(builder::add);
+        rosterIndex.publish(builder);
+        return rosterIndex.current();
+    }
+}